@@ -0,0 +1,33 @@
+package keml.analysis.bench;
+
+import keml.Conversation;
+import keml.analysis.ConversationGenerator;
+
+// builds reproducible conversations of a given size for the benchmarks
+public class ConversationFixture {
+
+	static final long SEED = 42L;
+	static final int INFOS_PER_MESSAGE = 3;
+
+	// partners: conversation partners (the first one is the LLM)
+	// infos: information nodes, a tenth of them pre knowledge
+	// linkDensity: average number of incoming links per node that is not on the first level
+	// chainDepth: number of levels, links only go from one level to the next, so this is the longest argument chain
+	public static Conversation create(int partners, int infos, double linkDensity, int chainDepth) {
+		int preKnowledge = infos / 10;
+		int newInfos = infos - preKnowledge;
+		int messages = Math.max(1, newInfos / INFOS_PER_MESSAGE);
+		int linked = infos - infos / Math.max(1, chainDepth);
+		return new ConversationGenerator(SEED)
+				.partners(partners)
+				.messages(messages)
+				.newInformation(newInfos)
+				.preKnowledge(preKnowledge)
+				.repetitions(messages / 5)
+				.links((int) Math.round(linkDensity * linked))
+				.shape(ConversationGenerator.Shape.CHAIN)
+				.depth(chainDepth)
+				.generate();
+	}
+
+}
@@ -0,0 +1,72 @@
+package keml.analysis.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import keml.analysis.ConversationAnalyser;
+import keml.analysis.ConversationStatistics;
+import keml.analysis.InformationPartAnalyser;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvBenchmark {
+
+	ConversationAnalyser conversationAnalyser;
+	InformationPartAnalyser informationAnalyser;
+	File generalCsv;
+
+	@Setup(Level.Trial)
+	public void setup(FixtureState fixture) throws IOException {
+		conversationAnalyser = new ConversationAnalyser(fixture.conv);
+		informationAnalyser = new InformationPartAnalyser(ConversationAnalyser.getPartnerNames(fixture.conv),
+				ConversationAnalyser.getReceives(fixture.conv), fixture.conv.getAuthor().getPreknowledge());
+		generalCsv = Files.createTempFile("bench", "-general.csv").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		generalCsv.delete();
+	}
+
+	// the matrix is printed to a writer that drops everything, so only the analysis and formatting is measured
+	@Benchmark
+	public void writeInformationConnections() throws IOException {
+		try (CSVPrinter csvPrinter = new CSVPrinter(Writer.nullWriter(), CSVFormat.DEFAULT)) {
+			informationAnalyser.writeInformationConnections(csvPrinter);
+		}
+	}
+
+	// the single pass both CSVs are written from
+	@Benchmark
+	public ConversationStatistics collectStatistics(FixtureState fixture) {
+		return ConversationStatistics.of(fixture.conv);
+	}
+
+	@Benchmark
+	public void writeGeneralCSV() throws IOException {
+		conversationAnalyser.writeGeneralCSV(generalCsv.getPath());
+	}
+
+}
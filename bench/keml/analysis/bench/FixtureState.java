@@ -0,0 +1,34 @@
+package keml.analysis.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import keml.Conversation;
+
+// fixture size, change with e.g. -p infos=100000 -p chainDepth=50
+@State(Scope.Benchmark)
+public class FixtureState {
+
+	@Param({ "4" })
+	public int partners;
+
+	@Param({ "1000", "10000" })
+	public int infos;
+
+	@Param({ "2.0" })
+	public double linkDensity;
+
+	@Param({ "10" })
+	public int chainDepth;
+
+	public Conversation conv;
+
+	@Setup(Level.Trial)
+	public void createConversation() {
+		conv = ConversationFixture.create(partners, infos, linkDensity, chainDepth);
+	}
+
+}
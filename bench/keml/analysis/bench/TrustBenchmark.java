@@ -0,0 +1,87 @@
+package keml.analysis.bench;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.javatuples.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import keml.Information;
+import keml.analysis.ArgumentationGraph;
+import keml.analysis.TrustBatch;
+import keml.analysis.TrustEvaluator;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrustBenchmark {
+
+	TrustEvaluator evaluator;
+	ArgumentationGraph graph;
+	List<Pair<String, Map<String, Float>>> configurations;
+	Map<String, Float> configuration;
+	float[] initialTrust;
+	float[][] initialTrusts;
+
+	@Setup(Level.Trial)
+	public void setup(FixtureState fixture) {
+		evaluator = new TrustEvaluator(fixture.conv, 2);
+		graph = ArgumentationGraph.compile(fixture.conv);
+		configurations = TrustEvaluator.standardTrustConfigurations(fixture.conv.getConversationPartners());
+		configuration = configurations.get(1).getValue1();
+		evaluator.assignInitialTrust(configuration, 1.0F);
+		initialTrust = graph.initialTrust(configuration, 1.0F);
+		initialTrusts = configurations.stream().map(p -> graph.initialTrust(p.getValue1(), 1.0F))
+				.toArray(float[][]::new);
+	}
+
+	// propagation on the EMF model only, initial trust is assigned once in setup
+	@Benchmark
+	public void evaluate() {
+		evaluator.evaluate();
+	}
+
+	@Benchmark
+	public HashMap<Information, Pair<Float, Float>> analyse() {
+		return evaluator.analyse(configuration, 1.0F);
+	}
+
+	@Benchmark
+	public ArgumentationGraph compileGraph(FixtureState fixture) {
+		return ArgumentationGraph.compile(fixture.conv);
+	}
+
+	@Benchmark
+	public float[] evaluateGraph() {
+		return graph.evaluate(initialTrust, 2);
+	}
+
+	// all standard weights and configurations, what AnalysisProvider runs per file
+	@Benchmark
+	public TrustBatch evaluateBatch() {
+		return graph.evaluate(TrustEvaluator.standardWeights(), initialTrusts);
+	}
+
+	// level by level on the common pool, sequential below ArgumentationGraph's threshold (use -p infos=100000)
+	@Benchmark
+	public TrustBatch evaluateBatchParallel() {
+		return graph.evaluate(TrustEvaluator.standardWeights(), initialTrusts, ForkJoinPool.commonPool());
+	}
+
+}
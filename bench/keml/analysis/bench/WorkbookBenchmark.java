@@ -0,0 +1,103 @@
+package keml.analysis.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.util.LocaleUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import keml.NewInformation;
+import keml.PreKnowledge;
+import keml.analysis.ArgumentationGraph;
+import keml.analysis.ConversationAnalyser;
+import keml.analysis.TrustBatch;
+import keml.analysis.TrustEvaluator;
+import keml.analysis.WorkbookController;
+
+// workbook phases of one weight: a fresh controller per invocation, filled with precomputed trust values
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkbookBenchmark {
+
+	List<NewInformation> newInfos;
+	List<PreKnowledge> preKnowledge;
+	List<String> names;
+	TrustBatch batch;
+	Path folder;
+
+	@Setup(Level.Trial)
+	public void setup(FixtureState fixture) throws IOException {
+		LocaleUtil.setUserLocale(Locale.US);
+		newInfos = ConversationAnalyser.getNewInfos(ConversationAnalyser.getReceives(fixture.conv));
+		preKnowledge = fixture.conv.getAuthor().getPreknowledge();
+		var configurations = TrustEvaluator.standardTrustConfigurations(fixture.conv.getConversationPartners());
+		names = configurations.stream().map(p -> p.getValue0()).toList();
+		ArgumentationGraph graph = ArgumentationGraph.compile(fixture.conv);
+		batch = graph.evaluate(new int[] { 2 },
+				configurations.stream().map(p -> graph.initialTrust(p.getValue1(), 1.0F)).toArray(float[][]::new));
+		folder = Files.createTempDirectory("bench");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (File f : folder.toFile().listFiles()) {
+			f.delete();
+		}
+		folder.toFile().delete();
+	}
+
+	@Benchmark
+	public WorkbookController initialize() {
+		WorkbookController wbc = new WorkbookController();
+		wbc.initialize(newInfos, preKnowledge);
+		return wbc;
+	}
+
+	@Benchmark
+	public WorkbookController initializeAndAddTrusts() {
+		WorkbookController wbc = initialize();
+		addTrusts(wbc);
+		return wbc;
+	}
+
+	@Benchmark
+	public void initializeAddTrustsAndWrite() throws IOException {
+		WorkbookController wbc = initialize();
+		addTrusts(wbc);
+		wbc.write(folder.resolve("bench-w2-").toString());
+	}
+
+	@Benchmark
+	public void streamingWrite() throws IOException {
+		WorkbookController wbc = new WorkbookController(true);
+		wbc.writeRows(newInfos, preKnowledge, batch, 0, names);
+		wbc.write(folder.resolve("bench-streaming-w2-").toString());
+	}
+
+	private void addTrusts(WorkbookController wbc) {
+		for (int s = 0; s < names.size(); s++) {
+			wbc.addTrusts(batch.getInitialTrust(s), batch.getTrust(0, s), names.get(s));
+		}
+	}
+
+}
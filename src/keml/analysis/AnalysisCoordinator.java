@@ -0,0 +1,343 @@
+package keml.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+// AnalysisProvider with --workers: the corpus is analysed by local worker JVMs (AnalysisWorker), so that no single
+// heap has to hold the garbage of all files
+// files are split into shards by the hash of their name, so a file lands in the same shard as long as the number
+// of shards stays the same; each worker gets one shard at a time and reports every file of it
+// a shard whose worker dies (out of memory, killed) or does not finish it within options.shardTimeout seconds goes
+// back to the pending shards and is sent to a fresh worker, up to MAX_ATTEMPTS times, and its partial results are
+// dropped; failures of single files are reported like in a normal run and not retried
+// the manifest entries of all shards are merged into the manifest of the analysis folder once all shards are done,
+// statistics (--corpus) and metrics come back with each file like in a run in this process
+public class AnalysisCoordinator {
+
+	static int MAX_ATTEMPTS = 3;
+	static int SHARDS_PER_WORKER = 4;
+
+	// outcome of one file as reported by a worker, entry is null if the worker had no manifest entry for it
+	record Result(AnalysisProvider.FileResult file, AnalysisManifest.Entry entry) {
+	}
+
+	// the failure of a file as reported by its worker, the stack trace was printed by the worker
+	static final class WorkerFailure extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		WorkerFailure(String message) {
+			super(message, null, false, false);
+		}
+
+		@Override
+		public String toString() {
+			return getMessage();
+		}
+	}
+
+	private final AnalysisOptions options;
+	private final List<String> command;
+	private final Map<String, Result> results = new ConcurrentHashMap<>();
+	private final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger shardsDone = new AtomicInteger();
+	private AtomicIntegerArray attempts; // per shard
+	// kills the workers that take too long for a shard
+	private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "worker-deadlines");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public AnalysisCoordinator(AnalysisOptions options) {
+		this(options, workerCommand(options));
+	}
+
+	// with another command for the worker processes, which must speak the protocol of AnalysisWorker
+	AnalysisCoordinator(AnalysisOptions options, List<String> command) {
+		this.options = options;
+		this.command = command;
+	}
+
+	// results are in the order of files like those of AnalysisProvider.analyseCorpus
+	public static List<AnalysisProvider.FileResult> analyseCorpus(File[] files, File targetFolder,
+			AnalysisOptions options) throws IOException, InterruptedException {
+		return new AnalysisCoordinator(options).run(files, targetFolder);
+	}
+
+	List<AnalysisProvider.FileResult> run(File[] files, File targetFolder) throws IOException, InterruptedException {
+		List<List<File>> shards = shards(files,
+				options.shards > 0 ? options.shards : options.workers * SHARDS_PER_WORKER);
+		attempts = new AtomicIntegerArray(shards.size());
+		for (int s = 0; s < shards.size(); s++) {
+			pending.add(s);
+		}
+		int workers = Math.min(options.workers, shards.size());
+		System.out.println("Analysing " + files.length + " files in " + shards.size() + " shards with " + workers
+				+ " worker processes.");
+		try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers))) {
+			for (int w = 0; w < workers; w++) {
+				// a failed shard is put back by the thread that sent it, which then polls it again itself if the
+				// others are done
+				executor.submit(() -> {
+					try (Worker worker = new Worker()) {
+						Integer shard;
+						while ((shard = pending.poll()) != null) {
+							analyse(worker, shard, shards.get(shard), shards.size());
+						}
+					}
+					return null;
+				});
+			}
+		} finally {
+			deadlines.shutdownNow();
+		}
+
+		if (options.incremental) {
+			AnalysisManifest manifest = AnalysisManifest.load(targetFolder.toPath());
+			for (Result r : results.values()) {
+				if (r.entry() != null)
+					manifest.put(r.file().name(), r.entry());
+			}
+			manifest.save(AnalysisProvider.sourceFolder(options).toPath());
+		}
+		List<AnalysisProvider.FileResult> res = new ArrayList<>();
+		for (File file : files) {
+			Result r = results.get(file.getName());
+			res.add(r != null ? r.file()
+					: new AnalysisProvider.FileResult(file.getName(), new WorkerFailure("No result from any worker"),
+							false));
+		}
+		return res;
+	}
+
+	// files by the hash of their name, empty shards are left out, the files of a shard stay in the order of files
+	static List<List<File>> shards(File[] files, int count) {
+		List<List<File>> shards = new ArrayList<>();
+		for (int s = 0; s < count; s++) {
+			shards.add(new ArrayList<>());
+		}
+		for (File file : files) {
+			shards.get(Math.floorMod(file.getName().hashCode(), count)).add(file);
+		}
+		shards.removeIf(List::isEmpty);
+		return shards;
+	}
+
+	// one attempt at the shard; on failure the worker is stopped, so that it is restarted for the next shard, and the
+	// shard goes back to pending until it failed MAX_ATTEMPTS times
+	private void analyse(Worker worker, int shard, List<File> files, int shardCount) {
+		try {
+			results.putAll(worker.analyse(shard, files));
+			System.out.println("Shard " + (shard + 1) + " of " + shardCount + " done (" + files.size()
+					+ " files), " + shardsDone.incrementAndGet() + " of " + shardCount + " shards finished.");
+		} catch (IOException e) {
+			worker.stop();
+			int attempt = attempts.incrementAndGet(shard);
+			System.out.println("Shard " + (shard + 1) + " failed in attempt " + attempt + ": " + e.getMessage());
+			if (attempt < MAX_ATTEMPTS) {
+				pending.add(shard);
+				return;
+			}
+			for (File file : files) {
+				WorkerFailure shardFailure = new WorkerFailure(
+						"Shard failed " + MAX_ATTEMPTS + " times: " + e.getMessage());
+				results.put(file.getName(),
+						new Result(new AnalysisProvider.FileResult(file.getName(), shardFailure, false), null));
+			}
+			shardsDone.incrementAndGet();
+		}
+	}
+
+	// the same java and class path as this JVM with its heap settings, the worker exits on running out of memory so
+	// that its shard is retried
+	// the worker gets the arguments of this run without those that only concern the coordinator, --metrics stays so that
+	// the workers count the graph levels for the report
+	static List<String> workerCommand(AnalysisOptions options) {
+		List<String> res = new ArrayList<>();
+		res.add(ProcessHandle.current().info().command()
+				.orElse(Paths.get(System.getProperty("java.home"), "bin", "java").toString()));
+		for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (arg.startsWith("-Xmx") || arg.startsWith("-Xms") || arg.startsWith("-Xss"))
+				res.add(arg);
+		}
+		res.add("-XX:+ExitOnOutOfMemoryError");
+		// messages of the JVM itself must not end up in the protocol
+		res.add("-XX:+DisplayVMOutputToStderr");
+		res.add("-cp");
+		res.add(System.getProperty("java.class.path"));
+		res.add(AnalysisWorker.class.getName());
+		for (int i = 0; i < options.arguments.length; i++) {
+			switch (options.arguments[i]) {
+			case "--watch" -> {
+			}
+			case "--workers", "--shards", "--shard-timeout" -> i++;
+			default -> res.add(options.arguments[i]);
+			}
+		}
+		return res;
+	}
+
+	// one worker process, started on first use and after every failure
+	private final class Worker implements AutoCloseable {
+
+		private volatile Process process;
+		private CSVPrinter requests;
+		private Iterator<CSVRecord> responses;
+		private volatile boolean timedOut;
+
+		private void start() throws IOException {
+			process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			requests = new CSVPrinter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8),
+					CSVFormat.DEFAULT);
+			responses = CSVFormat.DEFAULT.parse(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))
+					.iterator();
+			CSVRecord ready = next();
+			if (!ready.get(0).equals(AnalysisWorker.READY) || !ready.get(1).equals(AnalysisWorker.VERSION))
+				throw new IOException("Unexpected worker greeting " + ready);
+		}
+
+		// the results of the shard, the worker is killed if it has not reported all of them after options.shardTimeout
+		// seconds, starting the worker included
+		Map<String, Result> analyse(int shard, List<File> files) throws IOException {
+			timedOut = false;
+			ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+				timedOut = true;
+				Process p = process;
+				if (p != null)
+					p.destroyForcibly();
+			}, options.shardTimeout, TimeUnit.SECONDS);
+			try {
+				return read(shard, files);
+			} catch (IOException e) {
+				if (timedOut)
+					throw new IOException("No result within " + options.shardTimeout + " seconds, worker killed");
+				throw e;
+			} finally {
+				// killed just after the last result, it is started again for the next shard
+				if (!deadline.cancel(false))
+					stop();
+			}
+		}
+
+		private Map<String, Result> read(int shard, List<File> files) throws IOException {
+			if (process == null)
+				start();
+			requests.print(AnalysisWorker.SHARD);
+			requests.print(shard);
+			for (File file : files) {
+				requests.print(file.getAbsolutePath());
+			}
+			requests.println();
+			requests.flush();
+			Map<String, Result> res = new HashMap<>();
+			// sent before the FILE record of their file
+			Map<String, ConversationStatistics> statistics = new HashMap<>();
+			Map<String, AnalysisMetrics> metrics = new HashMap<>();
+			while (true) {
+				CSVRecord r = next();
+				if (r.get(0).equals(AnalysisWorker.DONE) && r.get(1).equals(Integer.toString(shard)))
+					break;
+				try {
+					if (r.get(0).equals(AnalysisWorker.STATISTICS)) {
+						statistics.put(r.get(2), ConversationStatistics.parse(fields(r)));
+						continue;
+					}
+					if (r.get(0).equals(AnalysisWorker.METRICS)) {
+						metrics.put(r.get(2), AnalysisMetrics.parse(r.get(2), fields(r)));
+						continue;
+					}
+				} catch (RuntimeException e) {
+					throw new IOException("Unexpected worker response " + r, e);
+				}
+				if (!r.get(0).equals(AnalysisWorker.FILE))
+					throw new IOException("Unexpected worker response " + r);
+				String name = r.get(2);
+				String status = r.get(3);
+				AnalysisProvider.FileResult file = new AnalysisProvider.FileResult(name,
+						status.equals("failed") ? new WorkerFailure(r.get(4)) : null, status.equals("up-to-date"),
+						statistics.remove(name), metrics.remove(name));
+				AnalysisManifest.Entry entry = r.get(5).isEmpty() ? null
+						: new AnalysisManifest.Entry(r.get(5), emptyToNull(r.get(6)), emptyToNull(r.get(7)),
+								Boolean.parseBoolean(r.get(8)));
+				res.put(name, new Result(file, entry));
+			}
+			if (res.size() != files.size())
+				throw new IOException("Worker reported " + res.size() + " of " + files.size() + " files");
+			return res;
+		}
+
+		private CSVRecord next() throws IOException {
+			try {
+				if (responses.hasNext())
+					return responses.next();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			try {
+				throw new IOException("Worker exited with code " + process.waitFor());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the worker");
+			}
+		}
+
+		void stop() {
+			if (process != null)
+				process.destroyForcibly();
+			process = null;
+		}
+
+		// asks the worker to exit and waits a little for it
+		@Override
+		public void close() {
+			if (process == null)
+				return;
+			try {
+				requests.printRecord(AnalysisWorker.EXIT);
+				requests.close();
+				if (!process.waitFor(10, TimeUnit.SECONDS))
+					stop();
+			} catch (IOException e) {
+				stop();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stop();
+			}
+		}
+	}
+
+	// the fields of a STATISTICS or METRICS record after its file name
+	private static Iterator<String> fields(CSVRecord r) {
+		return r.toList().subList(3, r.size()).iterator();
+	}
+
+	private static String emptyToNull(String s) {
+		return s.isEmpty() ? null : s;
+	}
+
+}
@@ -0,0 +1,166 @@
+package keml.analysis;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+// remembers per KEML file which content and which parameters the outputs in the analysis folder were created from,
+// so that incremental runs only redo stale outputs
+public class AnalysisManifest {
+
+	static String fileName = "analysis-manifest.csv";
+	// change when the CSV outputs change, so that all of them are recreated once
+	static String generalVersion = "general-1";
+
+	enum Column {
+		FILE, HASH, GENERAL, TRUST, CYCLIC;
+	}
+
+	// what a file's outputs were created from, general or trust are null if that part is missing or failed
+	// cyclic graphs have fewer trust outputs, see AnalysisProvider.trustOutputs
+	record Entry(String hash, String general, String trust, boolean cyclic) {
+	}
+
+	private final Path path;
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private AnalysisManifest(Path path) {
+		this.path = path;
+	}
+
+	// never saved, collects the entries of analyses that write somewhere else first, see AnalysisWatcher
+	static AnalysisManifest inMemory() {
+		return new AnalysisManifest(null);
+	}
+
+	public static AnalysisManifest load(Path folder) throws IOException {
+		AnalysisManifest manifest = new AnalysisManifest(folder.resolve(fileName));
+		if (Files.exists(manifest.path)) {
+			try (BufferedReader reader = Files.newBufferedReader(manifest.path)) {
+				CSVFormat format = CSVFormat.DEFAULT.builder().setHeader(Column.class).setSkipHeaderRecord(true).build();
+				for (CSVRecord r : format.parse(reader)) {
+					// manifests written before CYCLIC was added lack the column
+					boolean cyclic = r.isSet(Column.CYCLIC.name()) && Boolean.parseBoolean(r.get(Column.CYCLIC));
+					manifest.entries.put(r.get(Column.FILE), new Entry(r.get(Column.HASH),
+							emptyToNull(r.get(Column.GENERAL)), emptyToNull(r.get(Column.TRUST)), cyclic));
+				}
+			}
+		}
+		return manifest;
+	}
+
+	// sorted by file name so that unchanged runs write the same manifest
+	// entries of files that are no longer in sourceFolder are dropped
+	public void save(Path sourceFolder) throws IOException {
+		entries.keySet().removeIf(file -> !Files.isRegularFile(sourceFolder.resolve(file)));
+		BufferedWriter writer = Files.newBufferedWriter(path);
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(Column.class).build())) {
+			for (Map.Entry<String, Entry> e : new TreeMap<>(entries).entrySet()) {
+				Entry entry = e.getValue();
+				csvPrinter.printRecord(e.getKey(), entry.hash(), nullToEmpty(entry.general()), nullToEmpty(entry.trust()),
+						entry.cyclic());
+			}
+			csvPrinter.flush();
+		}
+	}
+
+	public Entry get(String file) {
+		return entries.get(file);
+	}
+
+	public void put(String file, Entry entry) {
+		entries.put(file, entry);
+	}
+
+	public void remove(String file) {
+		entries.remove(file);
+	}
+
+	public boolean isGeneralFresh(String file, String hash) {
+		Entry e = entries.get(file);
+		return e != null && e.hash().equals(hash) && generalVersion.equals(e.general());
+	}
+
+	public boolean isTrustFresh(String file, String hash, String trustParameters) {
+		Entry e = entries.get(file);
+		return e != null && e.hash().equals(hash) && trustParameters.equals(e.trust());
+	}
+
+	// the parameters the trust outputs depend on besides the file content
+	public static String trustParameters(int[] weights, float authorValue, AnalysisOptions options) {
+		String res = "weights=" + Arrays.stream(weights).mapToObj(Integer::toString).collect(Collectors.joining(" "))
+				+ ";author=" + authorValue + ";streaming=" + options.streaming + ";singleWorkbook="
+				+ options.singleWorkbook;
+		if (options.records != null)
+			res += ";output=" + options.records.extension();
+		if (options.samples > 0)
+			res += ";samples=" + options.samples + ";seed=" + options.seed + ";distributions=" + options.distributions;
+		if (options.cycleTolerance != FixedPointTrustSolver.DEFAULT_TOLERANCE
+				|| options.cycleIterations != FixedPointTrustSolver.DEFAULT_ITERATIONS || options.cycleDamping != 0)
+			res += ";cycles=" + options.cycleTolerance + ":" + options.cycleIterations + ":" + options.cycleDamping;
+		if (options.timeline > 0)
+			res += ";timeline=" + options.timeline;
+		if (options.weightCurves != null)
+			res += ";weightCurves=" + options.weightCurves[0] + ":" + options.weightCurves[1] + ";weightGrid="
+					+ options.weightGrid;
+		return res;
+	}
+
+	// the trust outputs an entry was recorded for, read back from its trust parameters
+	static List<String> trustOutputs(String basePath, Entry entry) {
+		Map<String, String> parameters = new HashMap<>();
+		for (String parameter : entry.trust().split(";")) {
+			int eq = parameter.indexOf('=');
+			parameters.put(parameter.substring(0, eq), parameter.substring(eq + 1));
+		}
+		int[] weights = Arrays.stream(parameters.get("weights").split(" ")).filter(w -> !w.isEmpty())
+				.mapToInt(Integer::parseInt).toArray();
+		AnalysisOptions options = new AnalysisOptions();
+		options.singleWorkbook = Boolean.parseBoolean(parameters.get("singleWorkbook"));
+		if (parameters.containsKey("output"))
+			options.records = TrustRecordWriter.Format.valueOf(parameters.get("output").toUpperCase(Locale.ROOT));
+		options.samples = Integer.parseInt(parameters.getOrDefault("samples", "0"));
+		options.timeline = Integer.parseInt(parameters.getOrDefault("timeline", "0"));
+		if (parameters.containsKey("weightCurves")) {
+			options.weightCurves = Arrays.stream(parameters.get("weightCurves").split(":"))
+					.mapToDouble(Double::parseDouble).toArray();
+			options.weightGrid = Double.parseDouble(parameters.get("weightGrid"));
+		}
+		return AnalysisProvider.trustOutputs(basePath, weights, options, !entry.cyclic());
+	}
+
+	public static String hash(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String emptyToNull(String s) {
+		return s.isEmpty() ? null : s;
+	}
+
+	private static String nullToEmpty(String s) {
+		return s == null ? "" : s;
+	}
+
+}
@@ -0,0 +1,262 @@
+package keml.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// wall time and allocation of the phases of one conversation plus the size of its argumentation graph
+// every phase and graph is also emitted as a JFR event (keml.analysis.Phase, keml.analysis.Conversation), which costs
+// nothing unless a recording is running; writeReport gives the same numbers for a whole run as JSON
+// allocation is counted on the thread running the phase, work handed to other threads (--parallel-trust) is missed
+public final class AnalysisMetrics {
+
+	@Name("keml.analysis.Phase")
+	@Label("KEML Analysis Phase")
+	@Category({ "KEML", "Analysis" })
+	@Description("One phase of the analysis of a conversation")
+	static final class PhaseEvent extends Event {
+		@Label("File")
+		String file;
+		@Label("Phase")
+		String phase;
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+	}
+
+	@Name("keml.analysis.Conversation")
+	@Label("KEML Conversation")
+	@Category({ "KEML", "Analysis" })
+	@Description("Size of the argumentation graph of a conversation")
+	static final class ConversationEvent extends Event {
+		@Label("File")
+		String file;
+		@Label("Nodes")
+		int nodes;
+		@Label("Links")
+		int links;
+		@Label("Partners")
+		int partners;
+		@Label("Levels")
+		@Description("Dependency levels of the graph, -1 if it is cyclic")
+		int levels;
+		@Label("Evaluations")
+		@Description("Weights times trust configurations evaluated in the batch pass")
+		int evaluations;
+	}
+
+	record PhaseTiming(String phase, long nanos, long allocatedBytes) {
+	}
+
+	final String file;
+	private final List<PhaseTiming> phases = new ArrayList<>();
+	// graph size, nodes is -1 until the graph was compiled
+	int nodes = -1;
+	int links;
+	int partners;
+	int levels = -1; // -1 if cyclic or not wanted
+	int evaluations;
+	// levels cost a pass over the graph, they are only counted for the report (--metrics) and a running JFR recording
+	final boolean wantLevels;
+
+	public AnalysisMetrics(String file) {
+		this(file, false);
+	}
+
+	public AnalysisMetrics(String file, boolean wantLevels) {
+		this.file = file;
+		this.wantLevels = wantLevels;
+	}
+
+	// try (var phase = metrics.phase("load")) { ... }, with @SuppressWarnings("try") on the method as phase is unused
+	public Phase phase(String name) {
+		return new Phase(name);
+	}
+
+	public synchronized List<PhaseTiming> getPhases() {
+		return List.copyOf(phases);
+	}
+
+	public void graph(ArgumentationGraph graph, int evaluations) {
+		this.nodes = graph.size();
+		this.links = graph.getLinkCount();
+		this.partners = graph.getPartnerNames().size();
+		this.evaluations = evaluations;
+		ConversationEvent event = new ConversationEvent();
+		boolean commit = event.shouldCommit();
+		if ((wantLevels || commit) && graph.isAcyclic())
+			this.levels = graph.levels();
+		if (commit) {
+			event.file = file;
+			event.nodes = nodes;
+			event.links = links;
+			event.partners = partners;
+			event.levels = levels;
+			event.evaluations = evaluations;
+			event.commit();
+		}
+	}
+
+	private synchronized void add(PhaseTiming timing) {
+		phases.add(timing);
+	}
+
+	public final class Phase implements AutoCloseable {
+
+		private final String name;
+		private final long start = System.nanoTime();
+		private final long allocatedBefore = allocatedBytes();
+		private final PhaseEvent event = new PhaseEvent();
+
+		private Phase(String name) {
+			this.name = name;
+			event.begin();
+		}
+
+		@Override
+		public void close() {
+			long nanos = System.nanoTime() - start;
+			long after = allocatedBytes();
+			long allocated = allocatedBefore < 0 || after < 0 ? -1 : after - allocatedBefore;
+			add(new PhaseTiming(name, nanos, allocated));
+			event.end();
+			if (event.shouldCommit()) {
+				event.file = file;
+				event.phase = name;
+				event.allocated = allocated;
+				event.commit();
+			}
+		}
+	}
+
+	// bytes allocated by the current thread so far, -1 if the JVM cannot tell
+	static long allocatedBytes() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+				&& bean.isThreadAllocatedMemoryEnabled())
+			return bean.getCurrentThreadAllocatedBytes();
+		return -1;
+	}
+
+	// ************* worker protocol *****************
+
+	// graph size and phases as the fields of one CSV record, see AnalysisWorker
+	List<Object> fields() {
+		List<PhaseTiming> timings = getPhases();
+		List<Object> res = new ArrayList<>(List.of(nodes, links, partners, levels, evaluations, timings.size()));
+		for (PhaseTiming t : timings) {
+			res.add(t.phase());
+			res.add(t.nanos());
+			res.add(t.allocatedBytes());
+		}
+		return res;
+	}
+
+	// the metrics of file written by fields, measured in another process
+	static AnalysisMetrics parse(String file, Iterator<String> fields) {
+		AnalysisMetrics res = new AnalysisMetrics(file);
+		res.nodes = Integer.parseInt(fields.next());
+		res.links = Integer.parseInt(fields.next());
+		res.partners = Integer.parseInt(fields.next());
+		res.levels = Integer.parseInt(fields.next());
+		res.evaluations = Integer.parseInt(fields.next());
+		int phases = Integer.parseInt(fields.next());
+		for (int i = 0; i < phases; i++) {
+			res.add(new PhaseTiming(fields.next(), Long.parseLong(fields.next()), Long.parseLong(fields.next())));
+		}
+		return res;
+	}
+
+	// ************* report *****************
+
+	// JSON report of one run: totals and per file the status, graph size and phases in the order they ran
+	public static void writeReport(Path path, List<AnalysisProvider.FileResult> results, Instant started,
+			Duration wall) throws IOException {
+		long totalNodes = 0;
+		int failed = 0;
+		int upToDate = 0;
+		for (AnalysisProvider.FileResult r : results) {
+			if (r.failure() != null)
+				failed++;
+			else if (r.upToDate())
+				upToDate++;
+			if (r.metrics() != null && r.metrics().nodes > 0)
+				totalNodes += r.metrics().nodes;
+		}
+		double seconds = wall.toNanos() / 1e9;
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			writer.append("{\n");
+			writer.append("  \"started\": ").append(TrustRecordWriter.quote(started.toString())).append(",\n");
+			writer.append("  \"wallMillis\": ").append(millis(wall.toNanos())).append(",\n");
+			writer.append("  \"files\": ").append(Integer.toString(results.size())).append(",\n");
+			writer.append("  \"failed\": ").append(Integer.toString(failed)).append(",\n");
+			writer.append("  \"upToDate\": ").append(Integer.toString(upToDate)).append(",\n");
+			writer.append("  \"nodes\": ").append(Long.toString(totalNodes)).append(",\n");
+			writer.append("  \"nodesPerSecond\": ")
+					.append(seconds > 0 ? String.format(Locale.ROOT, "%.1f", totalNodes / seconds) : "null")
+					.append(",\n");
+			writer.append("  \"conversations\": [");
+			for (int i = 0; i < results.size(); i++) {
+				writer.append(i == 0 ? "\n" : ",\n");
+				writeFile(writer, results.get(i));
+			}
+			writer.append("\n  ]\n}\n");
+		}
+		System.out.println("Wrote metrics to " + path);
+	}
+
+	private static void writeFile(BufferedWriter writer, AnalysisProvider.FileResult r) throws IOException {
+		String status = r.failure() != null ? "failed" : r.upToDate() ? "up-to-date" : "ok";
+		writer.append("    {\"file\": ").append(TrustRecordWriter.quote(r.name()));
+		writer.append(", \"status\": \"").append(status).append('"');
+		if (r.failure() != null)
+			writer.append(", \"error\": ").append(TrustRecordWriter.quote(r.failure().toString()));
+		AnalysisMetrics m = r.metrics();
+		if (m != null) {
+			List<PhaseTiming> phases = m.getPhases();
+			long nanos = 0;
+			long allocated = 0;
+			for (PhaseTiming p : phases) {
+				nanos += p.nanos();
+				allocated = allocated < 0 || p.allocatedBytes() < 0 ? -1 : allocated + p.allocatedBytes();
+			}
+			writer.append(", \"millis\": ").append(millis(nanos));
+			writer.append(", \"allocatedBytes\": ").append(Long.toString(allocated));
+			if (m.nodes >= 0) {
+				writer.append(",\n      \"graph\": {\"nodes\": ").append(Integer.toString(m.nodes))
+						.append(", \"links\": ").append(Integer.toString(m.links))
+						.append(", \"partners\": ").append(Integer.toString(m.partners))
+						.append(", \"levels\": ").append(Integer.toString(m.levels))
+						.append(", \"evaluations\": ").append(Integer.toString(m.evaluations)).append('}');
+			}
+			writer.append(",\n      \"phases\": [");
+			for (int i = 0; i < phases.size(); i++) {
+				PhaseTiming p = phases.get(i);
+				writer.append(i == 0 ? "" : ", ").append("{\"phase\": ").append(TrustRecordWriter.quote(p.phase()))
+						.append(", \"millis\": ").append(millis(p.nanos()))
+						.append(", \"allocatedBytes\": ").append(Long.toString(p.allocatedBytes())).append('}');
+			}
+			writer.append(']');
+		}
+		writer.append('}');
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+}
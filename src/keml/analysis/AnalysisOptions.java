@@ -0,0 +1,176 @@
+package keml.analysis;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// command line options of AnalysisProvider: [folder] [--parallel <n>] [--streaming] [--single-workbook] [--incremental] [--parallel-trust]
+// [--samples <n>] [--seed <n>] [--distribution <partner>=<spec>]... [--weight-curves <from>:<to>] [--weight-grid <step>]
+// [--corpus] [--output xlsx|jsonl|csv] [--metrics] [--watch] [--cycle-tolerance <t>] [--cycle-iterations <n>]
+// [--cycle-damping <d>] [--timeline <weight>] [--sparse-arguments] [--workers <n>] [--shards <n>] [--shard-timeout <s>]
+// [--graph-cache]
+public class AnalysisOptions {
+
+	static String defaultFolder = "../keml.sample/introductoryExamples";
+
+	String[] arguments; // as given, for the worker processes
+	String folder = defaultFolder;
+	int parallelism = 1; // number of files analysed at the same time, 1 is the classic sequential run
+	boolean streaming = false; // write trust workbooks row by row with bounded memory
+	boolean singleWorkbook = false; // one trust workbook per conversation with a sheet per weight
+	boolean incremental = false; // only recreate outputs whose KEML file or parameters changed, see AnalysisManifest
+	boolean graphCache = false; // keep a binary copy of each conversation by content hash, see ConversationCache
+	boolean parallelTrust = false; // propagate trust level by level on the common fork/join pool
+	int samples = 0; // Monte Carlo samples of initial trust per conversation, 0 is off (see SensitivityAnalysis)
+	long seed = 1;
+	// per partner name, the author is "Author" and "*" stands for all partners that are not given
+	Map<String, TrustDistribution> distributions = new LinkedHashMap<>();
+	static TrustDistribution defaultDistribution = TrustDistribution.uniform(0.5f, 1.0f);
+	// interval of the exact trust curves over the argument weight, no curves if null (see ParametricTrustSolver)
+	double[] weightCurves = null;
+	double weightGrid = 0; // step of the sampled curves, 0 is no sampling
+	// headless trust output instead of the workbooks, null writes the workbooks (see TrustRecordWriter)
+	TrustRecordWriter.Format records = null;
+	boolean corpus = false; // also write the general and argument CSVs summed over all files
+	boolean sparseArguments = false; // also write the argument counts in long format, see writeSparseArgumentationCSV
+	boolean watch = false; // keep running and re-analyse changed files, see AnalysisWatcher
+	boolean metrics = false; // write a JSON report of phase times and graph sizes, see AnalysisMetrics
+	// fixed-point iteration of cyclic argumentation graphs, see FixedPointTrustSolver
+	double cycleTolerance = FixedPointTrustSolver.DEFAULT_TOLERANCE;
+	int cycleIterations = FixedPointTrustSolver.DEFAULT_ITERATIONS;
+	float cycleDamping = 0.0f;
+	int timeline = 0; // weight of the trust over the conversation time, 0 is off (see TrustTimeline)
+	int workers = 0; // worker processes that analyse the files, 0 analyses in this process (see AnalysisCoordinator)
+	int shards = 0; // number of shards for the workers, 0 is AnalysisCoordinator.SHARDS_PER_WORKER per worker
+	int shardTimeout = 3600; // seconds a worker may take for one shard before it is killed and the shard retried
+
+	public static AnalysisOptions parse(String[] args) {
+		AnalysisOptions options = new AnalysisOptions();
+		options.arguments = args.clone();
+		boolean folderSet = false;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+			case "--parallel":
+				// 0 or less: one file per available processor
+				int n = Integer.parseInt(value(args, ++i, arg));
+				options.parallelism = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+				break;
+			case "--streaming":
+				options.streaming = true;
+				break;
+			case "--single-workbook":
+				options.singleWorkbook = true;
+				break;
+			case "--incremental":
+				options.incremental = true;
+				break;
+			case "--graph-cache":
+				options.graphCache = true;
+				break;
+			case "--parallel-trust":
+				options.parallelTrust = true;
+				break;
+			case "--samples":
+				options.samples = Integer.parseInt(value(args, ++i, arg));
+				break;
+			case "--seed":
+				options.seed = Long.parseLong(value(args, ++i, arg));
+				break;
+			case "--distribution":
+				String spec = value(args, ++i, arg);
+				int eq = spec.lastIndexOf('=');
+				if (eq <= 0)
+					throw new IllegalArgumentException("Expected <partner>=<distribution> but got " + spec);
+				options.distributions.put(spec.substring(0, eq), TrustDistribution.parse(spec.substring(eq + 1)));
+				break;
+			case "--weight-curves":
+				String interval = value(args, ++i, arg);
+				String[] bounds = interval.split(":");
+				if (bounds.length != 2)
+					throw new IllegalArgumentException("Expected <from>:<to> but got " + interval);
+				options.weightCurves = new double[] { Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1]) };
+				break;
+			case "--output":
+				String format = value(args, ++i, arg);
+				switch (format) {
+				case "xlsx" -> options.records = null;
+				case "jsonl" -> options.records = TrustRecordWriter.Format.JSONL;
+				case "csv" -> options.records = TrustRecordWriter.Format.CSV;
+				default -> throw new IllegalArgumentException("Expected xlsx, jsonl or csv but got " + format);
+				}
+				break;
+			case "--watch":
+				options.watch = true;
+				break;
+			case "--metrics":
+				options.metrics = true;
+				break;
+			case "--corpus":
+				options.corpus = true;
+				break;
+			case "--sparse-arguments":
+				options.sparseArguments = true;
+				break;
+			case "--cycle-tolerance":
+				options.cycleTolerance = Double.parseDouble(value(args, ++i, arg));
+				break;
+			case "--cycle-iterations":
+				options.cycleIterations = Integer.parseInt(value(args, ++i, arg));
+				break;
+			case "--cycle-damping":
+				options.cycleDamping = Float.parseFloat(value(args, ++i, arg));
+				break;
+			case "--timeline":
+				options.timeline = Integer.parseInt(value(args, ++i, arg));
+				if (options.timeline <= 0)
+					throw new IllegalArgumentException("--timeline needs a positive weight");
+				break;
+			case "--workers":
+				options.workers = Integer.parseInt(value(args, ++i, arg));
+				if (options.workers <= 0)
+					throw new IllegalArgumentException("--workers needs at least one worker");
+				break;
+			case "--shards":
+				options.shards = Integer.parseInt(value(args, ++i, arg));
+				break;
+			case "--shard-timeout":
+				options.shardTimeout = Integer.parseInt(value(args, ++i, arg));
+				if (options.shardTimeout <= 0)
+					throw new IllegalArgumentException("--shard-timeout needs a positive number of seconds");
+				break;
+			case "--weight-grid":
+				options.weightGrid = Double.parseDouble(value(args, ++i, arg));
+				break;
+			default:
+				if (arg.startsWith("--") || folderSet)
+					throw new IllegalArgumentException("Unknown argument " + arg);
+				options.folder = arg;
+				folderSet = true;
+			}
+		}
+		if (options.weightGrid > 0 && options.weightCurves == null)
+			throw new IllegalArgumentException("--weight-grid needs --weight-curves");
+		return options;
+	}
+
+	public TrustDistribution distribution(String partner) {
+		return distributions.getOrDefault(partner, distributions.getOrDefault("*", defaultDistribution));
+	}
+
+	public Map<String, TrustDistribution> distributions(List<String> partners) {
+		Map<String, TrustDistribution> res = new HashMap<>();
+		for (String p : partners) {
+			res.put(p, distribution(p));
+		}
+		return res;
+	}
+
+	private static String value(String[] args, int i, String option) {
+		if (i >= args.length)
+			throw new IllegalArgumentException("Missing value for " + option);
+		return args[i];
+	}
+
+}
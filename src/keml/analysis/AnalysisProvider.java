@@ -5,19 +5,29 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.poi.util.LocaleUtil;
 
-import keml.Conversation;
 import keml.io.KemlFileHandler;
 
 public class AnalysisProvider {
 
 	public static String runAnalysis(Path json) throws IOException {
 		Path source = json.toAbsolutePath();
-		Conversation conv = new KemlFileHandler().loadKemlJSON(source.toString());
+		CompactConversation conv = KemlJsonReader.read(source);
 		String fileName = FilenameUtils.removeExtension(source.getFileName().toString());
 		String basePath = "../keml.sample/introductoryExamples/analysis/" + fileName + "/";
 		Path dir = Paths.get(basePath);
@@ -25,24 +35,17 @@ public class AnalysisProvider {
 		String basePathFile = basePath + fileName;
 		new ConversationAnalyser(conv).createCSVs(basePathFile);
 		LocaleUtil.setUserLocale(Locale.US);
-		for (int i = 2; i <= 10; i++) {
-			TrustEvaluator trusty = new TrustEvaluator(conv, i);
-			trusty.writeRowAnalysis(basePathFile + "-w" + i + "-",
-					TrustEvaluator.standardTrustConfigurations(conv.getConversationPartners()), 1.0F);
-		}
+		TrustEvaluator.writeRowAnalyses(conv, basePathFile, TrustEvaluator.standardWeights(),
+				TrustEvaluator.standardTrustConfigurations(conv.getPartnerNames()), 1.0F, new AnalysisOptions());
 		return basePath;
 	}
 
 	public static void main(String[] args) throws Exception {
 
-		String folder;
-		if (args.length == 0) {
-			folder = "../keml.sample/introductoryExamples";
-		} else {
-			folder = args[0];
-		}
+		AnalysisOptions options = AnalysisOptions.parse(args);
+		String folder = options.folder;
 
-		File sourceFolder = new File(folder + "/keml/");
+		File sourceFolder = sourceFolder(options);
 		File targetFolder = new File(folder + "/analysis/");
 
 		// if directory contains .keml but no ../analysis/
@@ -54,26 +57,272 @@ public class AnalysisProvider {
 				+ ".\n I will write the resulting files into " + targetFolder);
 
 		File[] files = sourceFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".keml"));
+		if (files == null)
+			throw new IllegalArgumentException("No KEML folder found at " + sourceFolder);
+		// listFiles gives no guarantee on the order, but the summary should always look the same
+		Arrays.sort(files);
 
-		for (File file : files) {
-			try {
-				String source = file.getAbsolutePath();
-				Conversation conv = new KemlFileHandler().loadKeml(source);
+		// registered before the first run, so that changes during it are analysed afterwards
+		AnalysisWatcher watcher = null;
+		if (options.watch) {
+			watcher = new AnalysisWatcher(sourceFolder, targetFolder, options);
+			for (File file : files) {
+				watcher.analysed(file);
+			}
+		}
+		Instant started = Instant.now();
+		long start = System.nanoTime();
+		List<FileResult> results = options.workers > 0
+				? AnalysisCoordinator.analyseCorpus(files, targetFolder, options)
+				: analyseCorpus(files, targetFolder, options);
+		if (options.corpus)
+			writeCorpusCSVs(results, targetFolder, options);
+		if (options.metrics)
+			AnalysisMetrics.writeReport(targetFolder.toPath().resolve(metricsName + "-"
+					+ metricsTime.format(started.atZone(ZoneId.systemDefault())) + ".json"), results, started,
+					Duration.ofNanos(System.nanoTime() - start));
 
-				String basePath = targetFolder + "/" + FilenameUtils.removeExtension(file.getName());
+		System.out.println("Summary:");
+		int failed = 0;
+		for (FileResult result : results) {
+			if (result.failure() != null) {
+				failed++;
+				System.out.println(" FAILED " + result.name() + ": " + result.failure());
+				result.failure().printStackTrace();
+			} else if (result.upToDate()) {
+				System.out.println(" UP TO DATE " + result.name());
+			} else {
+				System.out.println(" OK     " + result.name());
+			}
+		}
+		System.out.println("Analysed " + (results.size() - failed) + " of " + results.size() + " KEML files.");
 
-				new ConversationAnalyser(conv).createCSVs(basePath);
-				LocaleUtil.setUserLocale(Locale.US);
+		if (watcher != null) {
+			try (AnalysisWatcher w = watcher) {
+				w.run();
+			}
+		}
+	}
 
-				for (int i = 2; i <= 10; i++) {
-					TrustEvaluator trusty = new TrustEvaluator(conv, i);
-					trusty.writeRowAnalysis(basePath + "-w" + i + "-",
-							TrustEvaluator.standardTrustConfigurations(conv.getConversationPartners()), 1.0F);
+	// outcome of one file, failure is null on success, upToDate if nothing had to be recreated
+	// statistics are only kept for the corpus summary (options.corpus)
+	public record FileResult(String name, Throwable failure, boolean upToDate, ConversationStatistics statistics,
+			AnalysisMetrics metrics) {
+
+		public FileResult(String name, Throwable failure, boolean upToDate) {
+			this(name, failure, upToDate, null, null);
+		}
+	}
+
+	// sums the statistics of all successful files in a parallel reduction and writes them like the CSVs of one file
+	// to corpusName-general.csv and corpusName-arguments.csv (and corpusName-arguments-sparse.csv with
+	// options.sparseArguments), partners are matched by name
+	public static void writeCorpusCSVs(List<FileResult> results, File targetFolder, AnalysisOptions options)
+			throws IOException {
+		var corpus = results.parallelStream()
+				.map(FileResult::statistics)
+				.filter(s -> s != null)
+				.reduce(ConversationStatistics::merge);
+		if (corpus.isEmpty())
+			return;
+		new ConversationAnalyser(corpus.get()).createCSVs(targetFolder + "/" + corpusName, options.sparseArguments);
+	}
+
+	// KEML JSON is read in one pass by KemlJsonReader, the XMI of .keml files is loaded as EMF model by keml.io
+	static CompactConversation load(Path file) throws IOException {
+		if (KemlJsonReader.isJson(file))
+			return KemlJsonReader.read(file);
+		return CompactConversation.of(new KemlFileHandler().loadKeml(file.toAbsolutePath().toString()));
+	}
+
+	// the KEML files of options.folder, the manifest drops the files that are gone from it
+	static File sourceFolder(AnalysisOptions options) {
+		return new File(options.folder + "/keml/");
+	}
+
+	static String corpusName = "_corpus";
+	// one metrics report per run, named by its start time so that runs can be compared over time
+	static String metricsName = "_metrics";
+	static DateTimeFormatter metricsTime = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	// analyses all files with the given number of files in progress at a time, results are in the order of files
+	// with options.incremental, the manifest in targetFolder decides which outputs are recreated
+	public static List<FileResult> analyseCorpus(File[] files, File targetFolder, AnalysisOptions options)
+			throws InterruptedException, IOException {
+		AnalysisManifest manifest = options.incremental ? AnalysisManifest.load(targetFolder.toPath()) : null;
+		try {
+			return analyseCorpus(files, targetFolder, options, manifest);
+		} finally {
+			if (manifest != null)
+				manifest.save(sourceFolder(options).toPath());
+		}
+	}
+
+	static List<FileResult> analyseCorpus(File[] files, File targetFolder, AnalysisOptions options,
+			AnalysisManifest manifest) throws InterruptedException {
+		if (options.parallelism <= 1) {
+			return Arrays.stream(files).map(file -> analyseFile(file, targetFolder, options, manifest)).toList();
+		}
+		try (ExecutorService executor = Executors.newFixedThreadPool(options.parallelism)) {
+			List<Future<FileResult>> futures = new ArrayList<>();
+			for (File file : files) {
+				futures.add(executor.submit(() -> analyseFile(file, targetFolder, options, manifest)));
+			}
+			List<FileResult> results = new ArrayList<>();
+			for (int i = 0; i < files.length; i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					// only errors get here, exceptions are already caught in analyseFile
+					results.add(new FileResult(files[i].getName(), e.getCause(), false));
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
 			}
+			return results;
 		}
 	}
 
+	public static FileResult analyseFile(File file, File targetFolder, AnalysisOptions options) {
+		return analyseFile(file, targetFolder, options, null);
+	}
+
+	// load, CSV and trust phases of one file; any failure is reported in the result and does not affect other files
+	// with a manifest, phases whose outputs exist and were created from the same content and parameters are skipped
+	@SuppressWarnings("try")
+	public static FileResult analyseFile(File file, File targetFolder, AnalysisOptions options,
+			AnalysisManifest manifest) {
+		String basePath = targetFolder + "/" + FilenameUtils.removeExtension(file.getName());
+		int[] weights = TrustEvaluator.standardWeights();
+		float authorValue = 1.0F;
+		String hash = null;
+		String general = null; // parameters of the outputs that are up to date, for the manifest
+		String trust = null;
+		boolean cyclic = false; // graph of the trust outputs
+		AnalysisMetrics metrics = new AnalysisMetrics(file.getName(), options.metrics);
+		try {
+			boolean writeGeneral = true;
+			boolean writeTrust = true;
+			if (manifest != null) {
+				hash = AnalysisManifest.hash(Files.readAllBytes(file.toPath()));
+				String trustParameters = AnalysisManifest.trustParameters(weights, authorValue, options);
+				if (manifest.isGeneralFresh(file.getName(), hash) && allExist(generalOutputs(basePath, options))) {
+					general = AnalysisManifest.generalVersion;
+					writeGeneral = false;
+				}
+				if (manifest.isTrustFresh(file.getName(), hash, trustParameters)) {
+					cyclic = manifest.get(file.getName()).cyclic();
+					if (allExist(trustOutputs(basePath, weights, options, !cyclic))) {
+						trust = trustParameters;
+						writeTrust = false;
+					}
+				}
+				// the corpus summary needs the statistics of every file, so then the file is still read
+				if (!writeGeneral && !writeTrust && !options.corpus)
+					return new FileResult(file.getName(), null, true, null, metrics);
+			}
+
+			// everything below works on the compact form, the EMF model is only kept while it is converted
+			CompactConversation compact = null;
+			ConversationCache cache = options.graphCache ? ConversationCache.of(options) : null;
+			if (cache != null) {
+				if (hash == null)
+					hash = AnalysisManifest.hash(Files.readAllBytes(file.toPath()));
+				try (var phase = metrics.phase("cache-read")) {
+					compact = cache.read(hash);
+				}
+			}
+			if (compact == null) {
+				try (var phase = metrics.phase("load")) {
+					compact = load(file.toPath());
+				}
+				if (cache != null) {
+					try (var phase = metrics.phase("cache-write")) {
+						cache.write(hash, compact);
+					} catch (IOException e) {
+						// the analysis itself does not need the cache
+						System.out.println("Could not cache " + file.getName() + ": " + e);
+					}
+				}
+			}
+
+			ConversationStatistics statistics = null;
+			if (writeGeneral || options.corpus) {
+				try (var phase = metrics.phase("statistics")) {
+					statistics = ConversationStatistics.of(compact);
+				}
+			}
+			if (writeGeneral) {
+				ConversationAnalyser analyser = new ConversationAnalyser(statistics);
+				try (var phase = metrics.phase("general-csv")) {
+					analyser.writeGeneralCSV(basePath + "-general.csv");
+				}
+				try (var phase = metrics.phase("arguments-csv")) {
+					analyser.writeArgumentationCSV(basePath + "-arguments.csv");
+					if (options.sparseArguments)
+						analyser.writeSparseArgumentationCSV(basePath + "-arguments-sparse.csv");
+				}
+				general = AnalysisManifest.generalVersion;
+			}
+			if (writeTrust) {
+				// POI keeps the user locale per thread, so set it on the worker and do not leave it behind
+				// headless runs never touch POI
+				boolean workbooks = options.records == null;
+				if (workbooks)
+					LocaleUtil.setUserLocale(Locale.US);
+				boolean acyclic;
+				try {
+					acyclic = TrustEvaluator.writeRowAnalyses(compact, basePath, weights,
+							TrustEvaluator.standardTrustConfigurations(compact.getPartnerNames()), authorValue, options,
+							metrics);
+				} finally {
+					if (workbooks)
+						LocaleUtil.resetUserLocale();
+				}
+				trust = AnalysisManifest.trustParameters(weights, authorValue, options);
+				cyclic = !acyclic;
+			}
+			return new FileResult(file.getName(), null, !writeGeneral && !writeTrust,
+					options.corpus ? statistics : null, metrics);
+		} catch (Exception e) {
+			return new FileResult(file.getName(), e, false, null, metrics);
+		} finally {
+			if (manifest != null && hash != null)
+				manifest.put(file.getName(), new AnalysisManifest.Entry(hash, general, trust, cyclic));
+		}
+	}
+
+	static List<String> generalOutputs(String basePath, AnalysisOptions options) {
+		if (options.sparseArguments)
+			return List.of(basePath + "-general.csv", basePath + "-arguments.csv", basePath + "-arguments-sparse.csv");
+		return List.of(basePath + "-general.csv", basePath + "-arguments.csv");
+	}
+
+	// TrustEvaluator skips sensitivity, timeline and weight curves of cyclic graphs and writes their cycles instead
+	static List<String> trustOutputs(String basePath, int[] weights, AnalysisOptions options, boolean acyclic) {
+		List<String> res = new ArrayList<>();
+		if (options.records != null) {
+			res.add(basePath + "-trust." + options.records.extension());
+		} else if (options.singleWorkbook) {
+			res.add(basePath + "-all--trust.xlsx");
+		} else {
+			Arrays.stream(weights).forEach(w -> res.add(basePath + "-w" + w + "--trust.xlsx"));
+		}
+		if (!acyclic) {
+			res.add(basePath + "-cycles.csv");
+			return res;
+		}
+		if (options.samples > 0)
+			Arrays.stream(weights).forEach(w -> res.add(basePath + "-w" + w + "-sensitivity.csv"));
+		if (options.timeline > 0)
+			res.add(basePath + "-w" + options.timeline + "-timeline.csv");
+		if (options.weightCurves != null)
+			res.add(basePath + "-weight-curves.csv");
+		if (options.weightGrid > 0)
+			res.add(basePath + "-weight-grid.csv");
+		return res;
+	}
+
+	private static boolean allExist(List<String> paths) {
+		return paths.stream().allMatch(p -> Files.exists(Paths.get(p)));
+	}
+
 }
@@ -0,0 +1,379 @@
+package keml.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.poi.util.LocaleUtil;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import keml.Conversation;
+import keml.io.KemlFileHandler;
+
+// analysis as a local service, so that callers do not pay JVM start, class loading and model loading on every call
+// POST /analyse?path=<KEML file>[&out=<folder>][&<option>[=<value>]]... analyses a file, without path the
+// request body is the KEML file (name=<base name> names the outputs, out is then required); JSON or XMI, see load
+// every other query parameter is an AnalysisProvider option without the leading --, e.g. output=jsonl&streaming
+// the outputs are written like AnalysisProvider does, the response lists them as JSON
+// loaded conversations are kept in an LRU cache keyed by the content hash, requests run on virtual threads
+// requests writing the same outputs run one after the other, options about the run as a whole are rejected
+// every request needs the header Authorization: Bearer <token>, the token is given with --token or made up at start
+// and printed; requests from browsers (Origin header) or to another host than the loopback are refused, so that
+// web pages cannot make the service read or write files
+// usage: AnalysisServer [--port <n>] [--cache <entries>] [--token <token>]
+public class AnalysisServer {
+
+	static final int DEFAULT_PORT = 8090;
+	static final int DEFAULT_CACHE = 32;
+	// options of a run over a folder, the service analyses one conversation per request
+	static final Set<String> UNSUPPORTED = Set.of("incremental", "corpus", "metrics", "parallel", "watch", "workers",
+			"shards", "shard-timeout", "graph-cache");
+
+	// what the analysis of one conversation needs, immutable and shared by concurrent requests
+	record Prepared(ConversationStatistics statistics, ArgumentationGraph graph, List<InformationRow> rows) {
+
+		static Prepared of(Conversation conv) {
+			return new Prepared(ConversationStatistics.of(conv), ArgumentationGraph.compile(conv),
+					InformationRow.of(ConversationAnalyser.getNewInfos(ConversationAnalyser.getReceives(conv)),
+							conv.getAuthor().getPreknowledge()));
+		}
+
+		static Prepared of(CompactConversation conv) {
+			return new Prepared(ConversationStatistics.of(conv), ArgumentationGraph.compile(conv),
+					InformationRow.of(conv));
+		}
+	}
+
+	// lock of one output base path with the number of requests holding or waiting for it
+	private static final class OutputLock {
+		// ReentrantLock does not pin the virtual thread while it writes
+		final ReentrantLock lock = new ReentrantLock();
+		int users; // only changed in the compute functions of outputLocks
+	}
+
+	private final HttpServer server;
+	private final Map<String, Prepared> cache;
+	private final byte[] token;
+	// the last request of a base path removes its lock
+	final Map<String, OutputLock> outputLocks = new ConcurrentHashMap<>();
+	private long hits = 0;
+	private long misses = 0;
+
+	public AnalysisServer(int port, int cacheSize) throws IOException {
+		this(port, cacheSize, newToken());
+	}
+
+	public AnalysisServer(int port, int cacheSize, String token) throws IOException {
+		if (token == null || token.isEmpty())
+			throw new IllegalArgumentException("The token must not be empty");
+		this.token = token.getBytes(StandardCharsets.UTF_8);
+		// least recently used entries go first
+		cache = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Prepared> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		// local tooling only, never reachable from other machines
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		int cacheSize = DEFAULT_CACHE;
+		String token = null;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--port" -> port = Integer.parseInt(args[++i]);
+			case "--cache" -> cacheSize = Integer.parseInt(args[++i]);
+			case "--token" -> token = args[++i];
+			default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+			}
+		}
+		AnalysisServer server = new AnalysisServer(port, cacheSize, token != null ? token : newToken());
+		server.start();
+		System.out.println("KEML analysis service listening on http://localhost:" + server.getPort() + "/analyse");
+		if (token == null)
+			System.out.println("Token: " + server.getToken());
+	}
+
+	// 128 random bits, new for every start
+	static String newToken() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		return HexFormat.of().formatHex(bytes);
+	}
+
+	public void start() {
+		server.createContext("/analyse", this::analyse);
+		server.createContext("/health", this::health);
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String getToken() {
+		return new String(token, StandardCharsets.UTF_8);
+	}
+
+	// answers 403 or 401 and returns false unless the request comes from a local tool with the token
+	private boolean admitted(HttpExchange exchange) throws IOException {
+		if (exchange.getRequestHeaders().containsKey("Origin")
+				|| !isLoopback(exchange.getRequestHeaders().getFirst("Host"))) {
+			respond(exchange, 403, error("Only local tools may use the service"));
+			return false;
+		}
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization == null || !authorization.startsWith("Bearer ") || !MessageDigest
+				.isEqual(token, authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8))) {
+			respond(exchange, 401, error("Give the token of the service as Authorization: Bearer <token>"));
+			return false;
+		}
+		return true;
+	}
+
+	// host names of the loopback, with or without port; other names may be DNS rebinding of a web page
+	static boolean isLoopback(String host) {
+		if (host == null)
+			return false;
+		String name = host.startsWith("[") ? host.substring(0, host.indexOf(']') + 1)
+				: host.indexOf(':') >= 0 ? host.substring(0, host.indexOf(':')) : host;
+		return name.equalsIgnoreCase("localhost") || name.equals("127.0.0.1") || name.equals("[::1]");
+	}
+
+	private void health(HttpExchange exchange) throws IOException {
+		if (!admitted(exchange))
+			return;
+		String body;
+		synchronized (cache) {
+			body = "{\"cached\": " + cache.size() + ", \"hits\": " + hits + ", \"misses\": " + misses + "}";
+		}
+		respond(exchange, 200, body);
+	}
+
+	private void analyse(HttpExchange exchange) throws IOException {
+		try {
+			if (!admitted(exchange))
+				return;
+			if (!exchange.getRequestMethod().equals("POST")) {
+				respond(exchange, 405, error("Use POST"));
+				return;
+			}
+			respond(exchange, 200, analyse(query(exchange.getRequestURI().getRawQuery()),
+					exchange.getRequestBody()));
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, error(e.getMessage()));
+		} catch (JsonProcessingException e) {
+			respond(exchange, 400, error("Not readable as KEML JSON: " + e.getOriginalMessage()));
+		} catch (NoSuchFileException e) {
+			respond(exchange, 404, error("No such file " + e.getFile()));
+		} catch (Exception e) {
+			// the details stay in the log of the service
+			e.printStackTrace();
+			respond(exchange, 500, error("The analysis failed"));
+		}
+	}
+
+	// runs one request and returns the JSON response
+	@SuppressWarnings("try")
+	String analyse(Map<String, String> query, InputStream body) throws Exception {
+		long start = System.nanoTime();
+		String path = query.remove("path");
+		String out = query.remove("out");
+		String name = query.remove("name");
+		byte[] content;
+		if (path != null) {
+			content = Files.readAllBytes(Paths.get(path));
+			if (name == null)
+				name = FilenameUtils.removeExtension(Paths.get(path).getFileName().toString());
+			if (out == null)
+				out = Paths.get(path).toAbsolutePath().getParent().resolveSibling("analysis").toString();
+		} else {
+			content = body.readAllBytes();
+			if (content.length == 0)
+				throw new IllegalArgumentException("Give a path or the KEML JSON as request body");
+			if (out == null)
+				throw new IllegalArgumentException("Give the output folder as out");
+			if (name == null)
+				name = "conversation";
+		}
+		for (String option : query.keySet()) {
+			if (UNSUPPORTED.contains(option))
+				throw new IllegalArgumentException("The option " + option + " is not supported by the service");
+		}
+		AnalysisOptions options = AnalysisOptions.parse(arguments(query));
+		AnalysisMetrics metrics = new AnalysisMetrics(name);
+
+		String hash = AnalysisManifest.hash(content);
+		Prepared prepared;
+		boolean cached;
+		synchronized (cache) {
+			prepared = cache.get(hash);
+			cached = prepared != null;
+			if (cached)
+				hits++;
+			else
+				misses++;
+		}
+		if (!cached) {
+			// loaded outside of the lock, two requests for the same new content may both load it
+			try (var phase = metrics.phase("load")) {
+				prepared = load(content, path);
+			}
+			synchronized (cache) {
+				cache.put(hash, prepared);
+			}
+		}
+
+		Files.createDirectories(Paths.get(out));
+		String basePath = out + File.separator + name;
+		int[] weights = TrustEvaluator.standardWeights();
+		String key = Paths.get(basePath).toAbsolutePath().normalize().toString();
+		OutputLock output = outputLocks.compute(key, (k, l) -> {
+			l = l != null ? l : new OutputLock();
+			l.users++;
+			return l;
+		});
+		output.lock.lock();
+		try {
+			write(prepared, basePath, weights, options, metrics);
+		} finally {
+			output.lock.unlock();
+			outputLocks.computeIfPresent(key, (k, l) -> --l.users == 0 ? null : l);
+		}
+
+		List<String> outputs = new ArrayList<>(AnalysisProvider.generalOutputs(basePath, options));
+		outputs.addAll(AnalysisProvider.trustOutputs(basePath, weights, options, prepared.graph().isAcyclic()));
+		StringBuilder sb = new StringBuilder("{\"outputs\": [");
+		for (int i = 0; i < outputs.size(); i++) {
+			sb.append(i == 0 ? "" : ", ").append(TrustRecordWriter.quote(outputs.get(i)));
+		}
+		sb.append("], \"cached\": ").append(cached);
+		sb.append(", \"millis\": ").append(String.format(Locale.ROOT, "%.3f", (System.nanoTime() - start) / 1e6));
+		return sb.append('}').toString();
+	}
+
+	@SuppressWarnings("try")
+	private static void write(Prepared prepared, String basePath, int[] weights, AnalysisOptions options,
+			AnalysisMetrics metrics) throws IOException {
+		ConversationAnalyser analyser = new ConversationAnalyser(prepared.statistics());
+		try (var phase = metrics.phase("general-csv")) {
+			analyser.writeGeneralCSV(basePath + "-general.csv");
+		}
+		try (var phase = metrics.phase("arguments-csv")) {
+			analyser.writeArgumentationCSV(basePath + "-arguments.csv");
+			if (options.sparseArguments)
+				analyser.writeSparseArgumentationCSV(basePath + "-arguments-sparse.csv");
+		}
+		boolean workbooks = options.records == null;
+		if (workbooks)
+			LocaleUtil.setUserLocale(Locale.US);
+		try {
+			TrustEvaluator.writeRowAnalyses(prepared.graph(), prepared.rows(), basePath, weights,
+					TrustEvaluator.standardTrustConfigurations(prepared.graph().getPartnerNames()), 1.0F, options,
+					metrics);
+		} finally {
+			if (workbooks)
+				LocaleUtil.resetUserLocale();
+		}
+	}
+
+	// by format like AnalysisProvider.load: KEML JSON with KemlJsonReader, XMI as EMF model
+	private static Prepared load(byte[] content, String path) throws IOException {
+		if (KemlJsonReader.isJson(content))
+			return Prepared.of(KemlJsonReader.read(new StringReader(new String(content, StandardCharsets.UTF_8))));
+		if (path != null)
+			return Prepared.of(loadXmi(Paths.get(path)));
+		// the model loader needs a file
+		Path tmp = Files.createTempFile("keml", ".keml");
+		try {
+			Files.write(tmp, content);
+			return Prepared.of(loadXmi(tmp));
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	// keml.io fails with runtime exceptions on content that is no KEML XMI
+	private static Conversation loadXmi(Path file) {
+		try {
+			return new KemlFileHandler().loadKeml(file.toAbsolutePath().toString());
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Not readable as KEML XMI: " + e.getMessage(), e);
+		}
+	}
+
+	// query parameters in their order, without a value for flags
+	static Map<String, String> query(String rawQuery) {
+		Map<String, String> res = new LinkedHashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty())
+			return res;
+		for (String parameter : rawQuery.split("&")) {
+			int eq = parameter.indexOf('=');
+			String key = URLDecoder.decode(eq < 0 ? parameter : parameter.substring(0, eq), StandardCharsets.UTF_8);
+			String value = eq < 0 ? null : URLDecoder.decode(parameter.substring(eq + 1), StandardCharsets.UTF_8);
+			res.put(key, value);
+		}
+		return res;
+	}
+
+	// the remaining parameters as AnalysisProvider arguments: output=jsonl is --output jsonl, streaming --streaming
+	private static String[] arguments(Map<String, String> query) {
+		List<String> res = new ArrayList<>();
+		for (Map.Entry<String, String> e : query.entrySet()) {
+			res.add("--" + e.getKey());
+			if (e.getValue() != null && !e.getValue().isEmpty() && !e.getValue().equals("true"))
+				res.add(e.getValue());
+		}
+		return res.toArray(String[]::new);
+	}
+
+	private static String error(String message) {
+		return "{\"error\": " + TrustRecordWriter.quote(message) + "}";
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+package keml.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FilenameUtils;
+
+// watch mode of AnalysisProvider (--watch): re-analyses KEML files of the source folder when they change
+// a file is analysed once no write to it came in for DEBOUNCE_MILLIS, files whose content did not change are skipped
+// the outputs are written to a staging folder inside the target folder and then moved over the old outputs one by
+// one with an atomic rename, so readers never see a half written file; old outputs that are not written again are
+// deleted
+// with --incremental the manifest is kept up to date and saved whenever all started analyses are done
+public class AnalysisWatcher implements AutoCloseable {
+
+	static final long DEBOUNCE_MILLIS = 500;
+
+	private final Path sourceFolder;
+	private final File targetFolder;
+	private final AnalysisOptions options;
+	private final WatchService watchService;
+	private final ExecutorService executor;
+	private AnalysisManifest manifest; // loaded by run() after the first analysis, null without --incremental
+
+	// only used by the watching thread
+	private final Map<Path, Long> lastChange = new HashMap<>(); // files waiting for the end of their burst
+	// shared with the workers
+	private final Set<Path> running = new HashSet<>(); // a changed running file waits in lastChange until it is done
+	private final Map<Path, String> analysedHash = new HashMap<>(); // content of the last analysis per file
+
+	public AnalysisWatcher(File sourceFolder, File targetFolder, AnalysisOptions options) throws IOException {
+		this.sourceFolder = sourceFolder.toPath();
+		this.targetFolder = targetFolder;
+		this.options = options;
+		watchService = FileSystems.getDefault().newWatchService();
+		this.sourceFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		executor = Executors.newFixedThreadPool(Math.max(1, options.parallelism));
+	}
+
+	// the file is analysed by the caller, only changes after this call lead to a new analysis
+	public void analysed(File file) throws IOException {
+		Path path = file.toPath();
+		String hash = AnalysisManifest.hash(Files.readAllBytes(path));
+		synchronized (running) {
+			analysedHash.put(path, hash);
+		}
+	}
+
+	// watches until the thread is interrupted
+	public void run() throws IOException {
+		if (options.incremental)
+			manifest = AnalysisManifest.load(targetFolder.toPath());
+		System.out.println("Watching " + sourceFolder + " for changed KEML files.");
+		try {
+			while (true) {
+				WatchKey key = watchService.poll(DEBOUNCE_MILLIS / 2, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							// events were lost, so every file may have changed
+							try (Stream<Path> files = Files.list(sourceFolder)) {
+								files.filter(AnalysisWatcher::isKeml).forEach(this::changed);
+							}
+						} else {
+							Path file = sourceFolder.resolve((Path) event.context());
+							if (isKeml(file))
+								changed(file);
+						}
+					}
+					key.reset();
+				}
+				submitQuiet();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void changed(Path file) {
+		lastChange.put(file, System.currentTimeMillis());
+	}
+
+	// starts the files whose last change is at least DEBOUNCE_MILLIS ago and that are not running already
+	private void submitQuiet() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Map.Entry<Path, Long>> it = lastChange.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, Long> e = it.next();
+			if (now - e.getValue() < DEBOUNCE_MILLIS)
+				continue;
+			Path file = e.getKey();
+			synchronized (running) {
+				if (!running.add(file))
+					continue; // stays pending until the running analysis is done
+			}
+			it.remove();
+			executor.submit(() -> {
+				try {
+					analyse(file);
+				} finally {
+					boolean last;
+					synchronized (running) {
+						running.remove(file);
+						last = running.isEmpty();
+					}
+					if (last)
+						saveManifest();
+				}
+			});
+		}
+	}
+
+	private void analyse(Path file) {
+		try {
+			if (!Files.exists(file))
+				return; // deleted again or renamed away, its outputs stay
+			String hash = AnalysisManifest.hash(Files.readAllBytes(file));
+			synchronized (running) {
+				if (hash.equals(analysedHash.get(file)))
+					return;
+			}
+			AnalysisProvider.FileResult result = analyseAtomically(file.toFile(), targetFolder, options, manifest);
+			if (result.failure() != null) {
+				System.out.println(" FAILED " + result.name() + ": " + result.failure());
+			} else {
+				synchronized (running) {
+					analysedHash.put(file, hash);
+				}
+				System.out.println(" OK     " + result.name());
+			}
+		} catch (IOException e) {
+			System.out.println(" FAILED " + file.getFileName() + ": " + e);
+		}
+	}
+
+	// the batch of analyses started together is done, at most one save at a time
+	private void saveManifest() {
+		if (manifest == null)
+			return;
+		synchronized (manifest) {
+			try {
+				manifest.save(sourceFolder);
+			} catch (IOException e) {
+				System.out.println("Could not save the manifest: " + e);
+			}
+		}
+	}
+
+	// analyses into a fresh staging folder next to the outputs and then renames every output into the target folder,
+	// nothing is replaced if the analysis fails and then the manifest entry of the file is dropped, as the outputs in
+	// the target folder are older than the content it records
+	// outputs of the previous analysis that this one does not write, e.g. the sensitivity of a graph that became cyclic,
+	// are deleted after the renames
+	static AnalysisProvider.FileResult analyseAtomically(File file, File targetFolder, AnalysisOptions options,
+			AnalysisManifest manifest) throws IOException {
+		List<String> previous = previousOutputs(
+				targetFolder.toPath().resolve(FilenameUtils.removeExtension(file.getName())).toString(),
+				manifest != null ? manifest.get(file.getName()) : null, options);
+		Path staging = Files.createTempDirectory(targetFolder.toPath(), ".staging-");
+		try {
+			// the staging folder is empty, so checking the manifest for fresh outputs there would never skip anything;
+			// the entry of this analysis is collected aside and recorded once its outputs are in place
+			AnalysisManifest staged = manifest != null ? AnalysisManifest.inMemory() : null;
+			AnalysisProvider.FileResult result = AnalysisProvider.analyseFile(file, staging.toFile(), options, staged);
+			if (result.failure() == null) {
+				List<Path> outputs = new ArrayList<>();
+				try (Stream<Path> files = Files.list(staging)) {
+					files.forEach(outputs::add);
+				}
+				Set<String> written = new HashSet<>();
+				try {
+					for (Path output : outputs) {
+						replace(output, targetFolder.toPath().resolve(output.getFileName()));
+						written.add(output.getFileName().toString());
+					}
+					for (String output : previous) {
+						Path old = Paths.get(output);
+						if (!written.contains(old.getFileName().toString()))
+							Files.deleteIfExists(old);
+					}
+				} catch (IOException e) {
+					if (manifest != null)
+						manifest.remove(file.getName());
+					throw e;
+				}
+				if (manifest != null)
+					manifest.put(file.getName(), staged.get(file.getName()));
+			} else if (manifest != null) {
+				manifest.remove(file.getName());
+			}
+			return result;
+		} finally {
+			try (Stream<Path> left = Files.list(staging)) {
+				for (Path p : (Iterable<Path>) left::iterator) {
+					Files.deleteIfExists(p);
+				}
+			}
+			Files.deleteIfExists(staging);
+		}
+	}
+
+	// what the last analysis of the file may have written: the outputs its manifest entry was recorded for, without
+	// an entry those of the current options for an acyclic and a cyclic graph
+	static List<String> previousOutputs(String basePath, AnalysisManifest.Entry entry, AnalysisOptions options) {
+		// the manifest does not record --sparse-arguments
+		List<String> res = new ArrayList<>(List.of(basePath + "-general.csv", basePath + "-arguments.csv",
+				basePath + "-arguments-sparse.csv"));
+		if (entry != null && entry.trust() != null) {
+			res.addAll(AnalysisManifest.trustOutputs(basePath, entry));
+		} else {
+			int[] weights = TrustEvaluator.standardWeights();
+			res.addAll(AnalysisProvider.trustOutputs(basePath, weights, options, true));
+			res.addAll(AnalysisProvider.trustOutputs(basePath, weights, options, false));
+		}
+		return res;
+	}
+
+	private static void replace(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static boolean isKeml(Path file) {
+		return file.getFileName().toString().toLowerCase().endsWith(".keml");
+	}
+
+	// waits for the analyses that are already running
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		watchService.close();
+	}
+
+}
@@ -0,0 +1,111 @@
+package keml.analysis;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+// one worker process of AnalysisCoordinator: analyses the shards it is sent and reports every file back
+// the protocol is a stream of CSV records in both directions, so it runs over stdin/stdout here and can run over a
+// socket to another machine later, as long as the KEML files and the analysis folder are reachable by the same paths
+//   worker:      READY,<version>
+//   coordinator: SHARD,<shard>,<KEML file>...   or   EXIT
+//   worker:      STATISTICS,<shard>,<name>,<ConversationStatistics.fields>   per file with --corpus
+//   worker:      METRICS,<shard>,<name>,<AnalysisMetrics.fields>   per file
+//   worker:      FILE,<shard>,<name>,<ok|up-to-date|failed>,<error>,<hash>,<general>,<trust>,<cyclic>   once per file
+//   worker:      DONE,<shard>
+// hash, general, trust and cyclic are the manifest entry of the file (empty without --incremental), the coordinator merges
+// them into the one manifest of the analysis folder; a worker only reads that manifest
+// usage: AnalysisWorker <AnalysisProvider arguments without those of the coordinator>
+public class AnalysisWorker {
+
+	static final String VERSION = "4";
+
+	static final String READY = "READY";
+	static final String SHARD = "SHARD";
+	static final String EXIT = "EXIT";
+	static final String STATISTICS = "STATISTICS";
+	static final String METRICS = "METRICS";
+	static final String FILE = "FILE";
+	static final String DONE = "DONE";
+
+	private final File targetFolder;
+	private final AnalysisOptions options;
+	private final AnalysisManifest manifest;
+
+	public AnalysisWorker(AnalysisOptions options) throws IOException {
+		this.options = options;
+		// the same folders as AnalysisProvider.main
+		targetFolder = new File(options.folder + "/analysis/");
+		manifest = options.incremental ? AnalysisManifest.load(targetFolder.toPath()) : null;
+	}
+
+	public static void main(String[] args) throws Exception {
+		// stdout carries the protocol, everything the analysis prints goes to stderr
+		OutputStream out = new FileOutputStream(FileDescriptor.out);
+		System.setOut(System.err);
+		new AnalysisWorker(AnalysisOptions.parse(args)).serve(System.in, out);
+	}
+
+	// answers shards until EXIT or the end of the input
+	public void serve(InputStream in, OutputStream out) throws IOException, InterruptedException {
+		CSVPrinter csvPrinter = new CSVPrinter(new OutputStreamWriter(out, StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+		csvPrinter.printRecord(READY, VERSION);
+		csvPrinter.flush();
+		Iterator<CSVRecord> requests = CSVFormat.DEFAULT.parse(new InputStreamReader(in, StandardCharsets.UTF_8))
+				.iterator();
+		while (requests.hasNext()) {
+			CSVRecord request = requests.next();
+			if (request.get(0).equals(EXIT))
+				break;
+			if (!request.get(0).equals(SHARD))
+				throw new IOException("Unexpected request " + request);
+			String shard = request.get(1);
+			List<File> files = new ArrayList<>();
+			for (int i = 2; i < request.size(); i++) {
+				files.add(new File(request.get(i)));
+			}
+			List<AnalysisProvider.FileResult> results = AnalysisProvider.analyseCorpus(files.toArray(File[]::new),
+					targetFolder, options, manifest);
+			for (AnalysisProvider.FileResult r : results) {
+				AnalysisManifest.Entry entry = manifest != null ? manifest.get(r.name()) : null;
+				String status = r.failure() != null ? "failed" : r.upToDate() ? "up-to-date" : "ok";
+				if (r.failure() != null)
+					r.failure().printStackTrace();
+				if (r.statistics() != null)
+					printRecord(csvPrinter, STATISTICS, shard, r.name(), r.statistics().fields());
+				if (r.metrics() != null)
+					printRecord(csvPrinter, METRICS, shard, r.name(), r.metrics().fields());
+				csvPrinter.printRecord(FILE, shard, r.name(), status, r.failure() != null ? r.failure().toString() : "",
+						entry != null ? entry.hash() : "", entry != null && entry.general() != null ? entry.general() : "",
+						entry != null && entry.trust() != null ? entry.trust() : "", entry != null && entry.cyclic());
+			}
+			csvPrinter.printRecord(DONE, shard);
+			csvPrinter.flush();
+		}
+	}
+
+	private static void printRecord(CSVPrinter csvPrinter, String type, String shard, String name, List<Object> fields)
+			throws IOException {
+		csvPrinter.print(type);
+		csvPrinter.print(shard);
+		csvPrinter.print(name);
+		for (Object field : fields) {
+			csvPrinter.print(field);
+		}
+		csvPrinter.println();
+	}
+
+}
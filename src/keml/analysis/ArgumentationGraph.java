@@ -0,0 +1,673 @@
+package keml.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import keml.Conversation;
+import keml.Information;
+import keml.InformationLink;
+import keml.NewInformation;
+import keml.PreKnowledge;
+import keml.ReceiveMessage;
+
+// immutable snapshot of the argumentation graph of a conversation, compiled into primitive arrays
+// evaluation never touches the EMF model, so one graph can be evaluated for many scenarios and weights in parallel
+public final class ArgumentationGraph {
+
+	// dense node ids: pre knowledge first, then new information in receive order (same order as the trust workbook rows)
+	// nodes and ids are null for graphs compiled from a CompactConversation, which only knows the messages
+	private final Information[] nodes;
+	private final HashMap<Information, Integer> ids;
+	private final String[] messages;
+	private final int preKnowledgeCount;
+
+	private final String[] partners; // index is the partner id
+	private final int[] partnerOf; // partner id of each node, -1 for the author (pre knowledge)
+	private final int[] repetitions;
+	private final int receiveCount;
+
+	// incoming links (getTargetedBy) in CSR layout: the links of node n are linkStart[n] ... linkStart[n+1]-1
+	private final int[] linkStart;
+	private final int[] linkSource;
+	private final float[] linkWeight;
+
+	// outgoing links, again CSR: the targets of node n are outTarget[outStart[n]] ... outTarget[outStart[n+1]-1]
+	private final int[] outStart;
+	private final int[] outTarget;
+
+	// topological order of all node ids, null if the graph contains cycles
+	private final int[] order;
+
+	// arrival over time (see TrustTimeline): step 0 holds the pre knowledge, step s >= 1 the s-th receive message in
+	// timing order; stepTiming is the timing of each step (-1 for step 0), stepOf the step of each node and the steps
+	// of the receive messages repeating node n are repeatStep[repeatStart[n]] ... repeatStep[repeatStart[n+1]-1]
+	private final int[] stepTiming;
+	private final int[] stepOf;
+	private final int[] repeatStart;
+	private final int[] repeatStep;
+
+	// graphs smaller than this are evaluated sequentially even if a pool is given
+	static final int PARALLEL_THRESHOLD = 1 << 14;
+	// nodes of one level evaluated by a single fork/join task
+	static final int LEVEL_CHUNK = 1 << 10;
+	// dependency levels for parallel evaluation, computed on first use: level l holds the nodes
+	// levelNodes[levelStart[l]] ... levelNodes[levelStart[l+1]-1], all their sources are on lower levels
+	private int[] levelStart;
+	private int[] levelNodes;
+
+	private ArgumentationGraph(Information[] nodes, HashMap<Information, Integer> ids, String[] messages,
+			int preKnowledgeCount, String[] partners, int[] partnerOf, int[] repetitions, int receiveCount,
+			int[] linkStart, int[] linkSource, float[] linkWeight, int[] receiveTiming, int[] receiveOf,
+			int[] repeatReceive, int[] repeatNode) {
+		this.nodes = nodes;
+		this.ids = ids;
+		this.messages = messages;
+		this.preKnowledgeCount = preKnowledgeCount;
+		this.partners = partners;
+		this.partnerOf = partnerOf;
+		this.repetitions = repetitions;
+		this.receiveCount = receiveCount;
+		this.linkStart = linkStart;
+		this.linkSource = linkSource;
+		this.linkWeight = linkWeight;
+
+		int n = partnerOf.length;
+		outStart = new int[n + 1];
+		for (int l = 0; l < linkSource.length; l++) {
+			outStart[linkSource[l] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			outStart[i + 1] += outStart[i];
+		}
+		outTarget = new int[linkSource.length];
+		int[] fill = Arrays.copyOf(outStart, n);
+		for (int target = 0; target < n; target++) {
+			for (int l = linkStart[target]; l < linkStart[target + 1]; l++) {
+				outTarget[fill[linkSource[l]]++] = target;
+			}
+		}
+		order = topologicalOrder();
+
+		// receive messages in timing order, equal timings keep the document order
+		int receives = receiveTiming.length;
+		Integer[] byTiming = new Integer[receives];
+		for (int r = 0; r < receives; r++) {
+			byTiming[r] = r;
+		}
+		Arrays.sort(byTiming, (a, b) -> Integer.compare(receiveTiming[a], receiveTiming[b]));
+		int[] stepOfReceive = new int[receives];
+		stepTiming = new int[receives + 1];
+		stepTiming[0] = -1;
+		for (int s = 1; s <= receives; s++) {
+			stepOfReceive[byTiming[s - 1]] = s;
+			stepTiming[s] = receiveTiming[byTiming[s - 1]];
+		}
+		stepOf = new int[n];
+		for (int i = 0; i < n; i++) {
+			stepOf[i] = receiveOf[i] < 0 ? 0 : stepOfReceive[receiveOf[i]];
+		}
+		repeatStart = new int[n + 1];
+		for (int node : repeatNode) {
+			repeatStart[node + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			repeatStart[i + 1] += repeatStart[i];
+		}
+		repeatStep = new int[repeatNode.length];
+		fill = Arrays.copyOf(repeatStart, n);
+		for (int r = 0; r < repeatNode.length; r++) {
+			repeatStep[fill[repeatNode[r]]++] = stepOfReceive[repeatReceive[r]];
+		}
+	}
+
+	public static ArgumentationGraph compile(Conversation conv) {
+		List<String> partnerNames = ConversationAnalyser.getPartnerNames(conv);
+		List<ReceiveMessage> receives = ConversationAnalyser.getReceives(conv);
+		List<NewInformation> newInfos = ConversationAnalyser.getNewInfos(receives);
+		List<PreKnowledge> preKnowledge = conv.getAuthor().getPreknowledge();
+
+		int n = preKnowledge.size() + newInfos.size();
+		Information[] nodes = new Information[n];
+		int[] partnerOf = new int[n];
+		int[] repetitions = new int[n];
+		HashMap<Information, Integer> ids = new HashMap<>(n * 2);
+		HashMap<String, Integer> partnerIds = new HashMap<>();
+		for (int p = 0; p < partnerNames.size(); p++) {
+			partnerIds.putIfAbsent(partnerNames.get(p), p);
+		}
+
+		int id = 0;
+		for (PreKnowledge pre : preKnowledge) {
+			partnerOf[id] = -1;
+			nodes[id] = pre;
+			ids.put(pre, id++);
+		}
+		for (NewInformation info : newInfos) {
+			partnerOf[id] = partnerIds.get(info.getSourceConversationPartner().getName());
+			nodes[id] = info;
+			ids.put(info, id++);
+		}
+
+		int[] receiveTiming = new int[receives.size()];
+		int[] receiveOf = new int[n];
+		Arrays.fill(receiveOf, 0, preKnowledge.size(), -1);
+		List<Integer> repeatReceive = new ArrayList<>();
+		List<Integer> repeatNode = new ArrayList<>();
+		for (int r = 0, node = preKnowledge.size(); r < receives.size(); r++) {
+			ReceiveMessage receive = receives.get(r);
+			receiveTiming[r] = receive.getTiming();
+			for (int k = 0; k < receive.getGenerates().size(); k++) {
+				receiveOf[node++] = r;
+			}
+			for (Information repeated : receive.getRepeats()) {
+				Integer repeatedId = ids.get(repeated);
+				if (repeatedId != null) {
+					repeatReceive.add(r);
+					repeatNode.add(repeatedId);
+				}
+			}
+		}
+
+		int[] linkStart = new int[n + 1];
+		int links = 0;
+		for (int i = 0; i < n; i++) {
+			repetitions[i] = nodes[i].getRepeatedBy().size();
+			for (InformationLink link : nodes[i].getTargetedBy()) {
+				if (ids.containsKey(link.getSource()))
+					links++;
+			}
+			linkStart[i + 1] = links;
+		}
+		int[] linkSource = new int[links];
+		float[] linkWeight = new float[links];
+		int l = 0;
+		for (int i = 0; i < n; i++) {
+			// links from outside the conversation cannot be evaluated and are left out
+			for (InformationLink link : nodes[i].getTargetedBy()) {
+				Integer source = ids.get(link.getSource());
+				if (source != null) {
+					linkSource[l] = source;
+					linkWeight[l++] = TrustEvaluator.edgeWeight(link.getType());
+				}
+			}
+		}
+
+		return new ArgumentationGraph(nodes, ids, null, preKnowledge.size(), partnerNames.toArray(new String[0]),
+				partnerOf, repetitions, receives.size(), linkStart, linkSource, linkWeight, receiveTiming, receiveOf,
+				repeatReceive.stream().mapToInt(Integer::intValue).toArray(),
+				repeatNode.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	// the links of a CompactConversation are already grouped by target
+	public static ArgumentationGraph compile(CompactConversation conv) {
+		int n = conv.size();
+		int[] linkStart = new int[n + 1];
+		for (int target : conv.linkTarget) {
+			linkStart[target + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			linkStart[i + 1] += linkStart[i];
+		}
+		float[] linkWeight = new float[conv.getLinkCount()];
+		for (int l = 0; l < linkWeight.length; l++) {
+			linkWeight[l] = TrustEvaluator.edgeWeight(conv.linkType(l));
+		}
+		return new ArgumentationGraph(null, null, conv.messages, conv.preKnowledgeCount, conv.partners, conv.partnerOf,
+				conv.repetitions, conv.getReceiveCount(), linkStart, conv.linkSource, linkWeight, conv.receiveTiming,
+				conv.receiveOf, conv.repeatReceive, conv.repeatNode);
+	}
+
+	public int size() {
+		return partnerOf.length;
+	}
+
+	public int getPreKnowledgeCount() {
+		return preKnowledgeCount;
+	}
+
+	public List<String> getPartnerNames() {
+		return List.of(partners);
+	}
+
+	// partner id of a node, -1 for pre knowledge of the author
+	int partnerOf(int node) {
+		return partnerOf[node];
+	}
+
+	public int getLinkCount() {
+		return linkSource.length;
+	}
+
+	// null if the graph was compiled from a CompactConversation
+	public Information getInformation(int id) {
+		return nodes != null ? nodes[id] : null;
+	}
+
+	// returns -1 if the information is not part of this graph
+	public int indexOf(Information info) {
+		return ids != null ? ids.getOrDefault(info, -1) : -1;
+	}
+
+	public boolean isAcyclic() {
+		return order != null;
+	}
+
+	// topological order of the node ids: every node comes after all sources of its incoming links
+	public int[] order() {
+		if (order == null)
+			throw cyclic();
+		return order.clone();
+	}
+
+	// initial trust per node: pre knowledge gets authorValue, new information the value of its source partner
+	public float[] initialTrust(Map<String, Float> valuePerPartner, float authorValue) {
+		float[] perPartner = new float[partners.length];
+		for (int p = 0; p < partners.length; p++) {
+			Float v = valuePerPartner.get(partners[p]);
+			if (v == null)
+				throw new IllegalArgumentException("No initial trust given for partner " + partners[p]);
+			perPartner[p] = v;
+		}
+		float[] res = new float[size()];
+		initialTrust(perPartner, authorValue, res);
+		return res;
+	}
+
+	// perPartner is indexed by partner id (the order of getPartnerNames())
+	void initialTrust(float[] perPartner, float authorValue, float[] res) {
+		for (int i = 0; i < res.length; i++) {
+			res[i] = partnerOf[i] < 0 ? authorValue : perPartner[partnerOf[i]];
+		}
+	}
+
+	public float[] evaluate(float[] initialTrust, int weight) {
+		float[] trust = new float[size()];
+		evaluate(initialTrust, weight, trust);
+		return trust;
+	}
+
+	// same computation as TrustEvaluator.evaluate(), writing the final trust of node i into trust[i]
+	public void evaluate(float[] initialTrust, int weight, float[] trust) {
+		if (order == null)
+			throw cyclic();
+		for (int i : order) {
+			trust[i] = nodeTrust(i, initialTrust[i], weight, trust);
+		}
+	}
+
+	// evaluates every weight with every initial trust configuration in one ordered pass over the graph
+	// each node keeps a vector of weights.length * initialTrusts.length values, see TrustBatch for the layout
+	public TrustBatch evaluate(int[] weights, float[][] initialTrusts) {
+		float[] trust = new float[size() * weights.length * initialTrusts.length];
+		evaluate(weights, initialTrusts, trust, null);
+		return new TrustBatch(size(), weights.clone(), initialTrusts, trust);
+	}
+
+	// like evaluate(float[], int, float[]), but the nodes of each dependency level are evaluated concurrently on the
+	// pool; every node still sums its links in the same order, so the results are bit-identical
+	public void evaluate(float[] initialTrust, int weight, float[] trust, ForkJoinPool pool) {
+		if (order == null)
+			throw cyclic();
+		if (!isWorthParallel(pool)) {
+			evaluate(initialTrust, weight, trust);
+			return;
+		}
+		forEachLevel(pool, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				int node = levelNodes[i];
+				trust[node] = nodeTrust(node, initialTrust[node], weight, trust);
+			}
+		});
+	}
+
+	// parallel version of evaluate(int[], float[][]), bit-identical as well
+	public TrustBatch evaluate(int[] weights, float[][] initialTrusts, ForkJoinPool pool) {
+		float[] trust = new float[size() * weights.length * initialTrusts.length];
+		evaluate(weights, initialTrusts, trust, pool);
+		return new TrustBatch(size(), weights.clone(), initialTrusts, trust);
+	}
+
+	// batch evaluation into a given array laid out like TrustBatch, so that repeated batches can reuse it
+	// sequential if pool is null
+	void evaluate(int[] weights, float[][] initialTrusts, float[] trust, ForkJoinPool pool) {
+		if (order == null)
+			throw cyclic();
+		int columns = weights.length * initialTrusts.length;
+		if (pool == null || !isWorthParallel(pool)) {
+			double[] sum = new double[columns];
+			double[] compensation = new double[columns];
+			for (int node : order) {
+				batchNodeTrust(node, weights, initialTrusts, trust, sum, compensation);
+			}
+			return;
+		}
+		forEachLevel(pool, (from, to) -> {
+			double[] sum = new double[columns];
+			double[] compensation = new double[columns];
+			for (int i = from; i < to; i++) {
+				batchNodeTrust(levelNodes[i], weights, initialTrusts, trust, sum, compensation);
+			}
+		});
+	}
+
+	// number of dependency levels, the longest chain of links has one node less
+	public int levels() {
+		computeLevels();
+		return levelStart.length - 1;
+	}
+
+	private boolean isWorthParallel(ForkJoinPool pool) {
+		return pool.getParallelism() > 1 && size() >= PARALLEL_THRESHOLD;
+	}
+
+	private interface Range {
+		void run(int from, int to);
+	}
+
+	// one level after the other, large levels split into chunks of LEVEL_CHUNK nodes
+	private void forEachLevel(ForkJoinPool pool, Range range) {
+		computeLevels();
+		for (int l = 0; l + 1 < levelStart.length; l++) {
+			int from = levelStart[l];
+			int to = levelStart[l + 1];
+			if (to - from <= LEVEL_CHUNK) {
+				range.run(from, to);
+			} else {
+				pool.invoke(new LevelTask(from, to, range));
+			}
+		}
+	}
+
+	private static final class LevelTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final transient Range range;
+
+		LevelTask(int from, int to, Range range) {
+			this.from = from;
+			this.to = to;
+			this.range = range;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= LEVEL_CHUNK) {
+				range.run(from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new LevelTask(from, middle, range), new LevelTask(middle, to, range));
+			}
+		}
+	}
+
+	private synchronized void computeLevels() {
+		if (levelStart != null)
+			return;
+		int n = size();
+		int[] level = new int[n];
+		int levels = n > 0 ? 1 : 0;
+		// in topological order all sources already have their level
+		for (int node : order) {
+			for (int l = linkStart[node]; l < linkStart[node + 1]; l++) {
+				level[node] = Math.max(level[node], level[linkSource[l]] + 1);
+			}
+			levels = Math.max(levels, level[node] + 1);
+		}
+		int[] start = new int[levels + 1];
+		for (int node = 0; node < n; node++) {
+			start[level[node] + 1]++;
+		}
+		for (int l = 0; l < levels; l++) {
+			start[l + 1] += start[l];
+		}
+		int[] nodesByLevel = new int[n];
+		int[] fill = Arrays.copyOf(start, levels);
+		for (int node = 0; node < n; node++) {
+			nodesByLevel[fill[level[node]]++] = node;
+		}
+		levelNodes = nodesByLevel;
+		levelStart = start;
+	}
+
+	// evaluates one node for all columns of a batch, sum and compensation are scratch space of columns values
+	private void batchNodeTrust(int node, int[] weights, float[][] initialTrusts, float[] trust, double[] sum,
+			double[] compensation) {
+		int scenarios = initialTrusts.length;
+		int columns = sum.length;
+		weightedInSum(linkWeight, linkSource, linkStart[node], linkStart[node + 1], null, 0, trust, sum, compensation);
+		float repetitionScore = repetitionScore(node);
+		int base = node * columns;
+		for (int w = 0, k = 0; w < weights.length; w++) {
+			for (int s = 0; s < scenarios; s++, k++) {
+				float argumentationScore = (float) (sum[k] - compensation[k]);
+				trust[base + k] = TrustEvaluator.limitTo1(initialTrusts[s][node] + repetitionScore
+						+ weights[w] * argumentationScore);
+			}
+		}
+	}
+
+	// compensated sums of weight[l] * trust of source[l] over the links from to to - 1, leaving out the links with
+	// step[l] > maxStep unless step is null; trust holds sum.length values per node (the columns of a batch) and
+	// the argumentation score of column k is sum[k] - compensation[k]
+	// the same summation as DoubleStream.sum() in TrustEvaluator, so that the single and batch passes, the fixed
+	// point solver, TrustSession and TrustTimeline all give bit-identical results
+	static void weightedInSum(float[] weight, int[] source, int from, int to, int[] step, int maxStep, float[] trust,
+			double[] sum, double[] compensation) {
+		int columns = sum.length;
+		Arrays.fill(sum, 0.0);
+		Arrays.fill(compensation, 0.0);
+		for (int l = from; l < to; l++) {
+			if (step != null && step[l] > maxStep)
+				continue;
+			float edgeWeight = weight[l];
+			int base = source[l] * columns;
+			for (int k = 0; k < columns; k++) {
+				double tmp = edgeWeight * trust[base + k] - compensation[k];
+				double velvel = sum[k] + tmp;
+				compensation[k] = (velvel - sum[k]) - tmp;
+				sum[k] = velvel;
+			}
+		}
+	}
+
+	// the argumentation score of a single evaluation
+	static float weightedInSum(float[] weight, int[] source, int from, int to, int[] step, int maxStep,
+			float[] trust) {
+		double[] sum = new double[1];
+		double[] compensation = new double[1];
+		weightedInSum(weight, source, from, to, step, maxStep, trust, sum, compensation);
+		return (float) (sum[0] - compensation[0]);
+	}
+
+	float nodeTrust(int node, float initialTrust, int weight, float[] trust) {
+		float argumentationScore = weightedInSum(linkWeight, linkSource, linkStart[node], linkStart[node + 1], null, 0,
+				trust);
+		return TrustEvaluator.limitTo1(initialTrust + repetitionScore(node) + weight * argumentationScore);
+	}
+
+	// number of steps of the conversation over time, the pre knowledge plus one per receive message
+	int steps() {
+		return stepTiming.length;
+	}
+
+	int stepTiming(int step) {
+		return stepTiming[step];
+	}
+
+	int stepOf(int node) {
+		return stepOf[node];
+	}
+
+	// steps of the receive messages that repeat the node, repetitions(node) of them
+	int[] repeatSteps(int node) {
+		return Arrays.copyOfRange(repeatStep, repeatStart[node], repeatStart[node + 1]);
+	}
+
+	// sources of the incoming links of a node and their edge weights, in summation order
+	int[] sources(int node) {
+		return Arrays.copyOfRange(linkSource, linkStart[node], linkStart[node + 1]);
+	}
+
+	float[] sourceWeights(int node) {
+		return Arrays.copyOfRange(linkWeight, linkStart[node], linkStart[node + 1]);
+	}
+
+	float repetitionScore(int node) {
+		return (float) repetitions[node] / receiveCount;
+	}
+
+	// Kahn's algorithm on the in-degrees, returns null if not all nodes could be ordered
+	private int[] topologicalOrder() {
+		int n = size();
+		int[] inDegree = new int[n];
+		for (int i = 0; i < n; i++) {
+			inDegree[i] = linkStart[i + 1] - linkStart[i];
+		}
+		int[] res = new int[n];
+		int head = 0;
+		int tail = 0;
+		for (int i = 0; i < n; i++) {
+			if (inDegree[i] == 0)
+				res[tail++] = i;
+		}
+		while (head < tail) {
+			int node = res[head++];
+			for (int o = outStart[node]; o < outStart[node + 1]; o++) {
+				if (--inDegree[outTarget[o]] == 0)
+					res[tail++] = outTarget[o];
+			}
+		}
+		return tail == n ? res : null;
+	}
+
+	private CyclicArgumentationException cyclic() {
+		List<int[]> components = cycles();
+		if (nodes != null) {
+			return new CyclicArgumentationException(
+					components.stream().map(c -> Arrays.stream(c).mapToObj(i -> nodes[i]).toList()).toList());
+		}
+		boolean[] member = new boolean[size()];
+		List<List<String>> componentLinks = new ArrayList<>();
+		for (int[] component : components) {
+			for (int i : component) {
+				member[i] = true;
+			}
+			List<String> links = new ArrayList<>();
+			for (int target : component) {
+				for (int l = linkStart[target]; l < linkStart[target + 1]; l++) {
+					if (member[linkSource[l]])
+						links.add(messages[linkSource[l]] + " -> " + messages[target]);
+				}
+			}
+			for (int i : component) {
+				member[i] = false;
+			}
+			componentLinks.add(links);
+		}
+		return new CyclicArgumentationException(components.stream().mapToInt(c -> c.length).toArray(), componentLinks);
+	}
+
+	// the strongly connected components that really form a cycle
+	private List<int[]> cycles() {
+		List<int[]> res = new ArrayList<>();
+		for (int[] component : tarjan()) {
+			if (isCycle(component))
+				res.add(component);
+		}
+		return res;
+	}
+
+	// all strongly connected components in topological order: every component comes after the components of all
+	// sources of its incoming links, for an acyclic graph each node is a component of its own
+	List<int[]> components() {
+		List<int[]> res = tarjan();
+		Collections.reverse(res);
+		return res;
+	}
+
+	// a component of more than one node or a node that supports or attacks itself
+	boolean isCycle(int[] component) {
+		return component.length > 1 || hasSelfLoop(component[0]);
+	}
+
+	// Tarjan's algorithm (iterative), the components in the order they are completed, that is sinks first
+	private List<int[]> tarjan() {
+		int n = size();
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		Arrays.fill(index, -1);
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int top = 0;
+		int counter = 0;
+		// simulated call stack of (node, position in its outgoing links)
+		int[] callNode = new int[n];
+		int[] callEdge = new int[n];
+		List<int[]> res = new ArrayList<>();
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0)
+				continue;
+			int depth = 0;
+			callNode[0] = root;
+			callEdge[0] = outStart[root];
+			index[root] = lowLink[root] = counter++;
+			stack[top++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				int v = callNode[depth];
+				if (callEdge[depth] < outStart[v + 1]) {
+					int w = outTarget[callEdge[depth]++];
+					if (index[w] < 0) {
+						index[w] = lowLink[w] = counter++;
+						stack[top++] = w;
+						onStack[w] = true;
+						depth++;
+						callNode[depth] = w;
+						callEdge[depth] = outStart[w];
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+				} else {
+					depth--;
+					if (depth >= 0) {
+						int parent = callNode[depth];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+					}
+					if (lowLink[v] == index[v]) {
+						int bottom = top;
+						do {
+							onStack[stack[--bottom]] = false;
+						} while (stack[bottom] != v);
+						// in the order they are popped
+						int[] component = new int[top - bottom];
+						for (int i = 0; i < component.length; i++) {
+							component[i] = stack[top - 1 - i];
+						}
+						res.add(component);
+						top = bottom;
+					}
+				}
+			}
+		}
+		return res;
+	}
+
+	private boolean hasSelfLoop(int node) {
+		for (int l = linkStart[node]; l < linkStart[node + 1]; l++) {
+			if (linkSource[l] == node)
+				return true;
+		}
+		return false;
+	}
+
+}
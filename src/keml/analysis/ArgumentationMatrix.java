@@ -0,0 +1,123 @@
+package keml.analysis;
+
+import java.util.Arrays;
+
+// attack, support and supplement counts between the fact and instruction entries of the partners and the author,
+// see InformationPartAnalyser.headers()
+// only cells with a link are stored, in an open addressing table keyed by row * dimension + column, so the memory
+// grows with the number of distinct source/target pairs and not with the square of the partners
+final class ArgumentationMatrix {
+
+	static final int ATTACKS = 0;
+	static final int SUPPORTS = 1;
+	static final int SUPPLEMENTS = 2;
+	private static final int TYPES = 3;
+
+	private static final long FREE = -1;
+
+	final int dimension;
+	private long[] keys;
+	private int[] counts; // TYPES counts per slot
+	private int size = 0;
+
+	ArgumentationMatrix(int dimension) {
+		this.dimension = dimension;
+		keys = new long[16];
+		Arrays.fill(keys, FREE);
+		counts = new int[keys.length * TYPES];
+	}
+
+	void add(int row, int column, int type, int count) {
+		int slot = slot((long) row * dimension + column, true);
+		counts[slot * TYPES + type] += count;
+	}
+
+	int get(int row, int column, int type) {
+		int slot = slot((long) row * dimension + column, false);
+		return slot < 0 ? 0 : counts[slot * TYPES + type];
+	}
+
+	int attacks(int row, int column) {
+		return get(row, column, ATTACKS);
+	}
+
+	int supports(int row, int column) {
+		return get(row, column, SUPPORTS);
+	}
+
+	int supplements(int row, int column) {
+		return get(row, column, SUPPLEMENTS);
+	}
+
+	// number of cells with at least one link
+	int size() {
+		return size;
+	}
+
+	// keys of all cells with a link in row major order, row = key / dimension and column = key % dimension
+	long[] cells() {
+		long[] res = new long[size];
+		int i = 0;
+		for (long key : keys) {
+			if (key != FREE)
+				res[i++] = key;
+		}
+		Arrays.sort(res);
+		return res;
+	}
+
+	int get(long cell, int type) {
+		return counts[slot(cell, false) * TYPES + type];
+	}
+
+	// adds all counts of m, the entry of row or column r of m goes to index[r] here
+	void add(ArgumentationMatrix m, int[] index) {
+		for (int slot = 0; slot < m.keys.length; slot++) {
+			long key = m.keys[slot];
+			if (key == FREE)
+				continue;
+			int target = slot((long) index[(int) (key / m.dimension)] * dimension + index[(int) (key % m.dimension)],
+					true);
+			for (int type = 0; type < TYPES; type++) {
+				counts[target * TYPES + type] += m.counts[slot * TYPES + type];
+			}
+		}
+	}
+
+	// linear probing, -1 if the key is missing and not to be inserted
+	private int slot(long key, boolean insert) {
+		int mask = keys.length - 1;
+		int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+		while (keys[slot] != key) {
+			if (keys[slot] == FREE) {
+				if (!insert)
+					return -1;
+				if (2 * (size + 1) > keys.length) {
+					grow();
+					return slot(key, true);
+				}
+				keys[slot] = key;
+				size++;
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		counts = new int[keys.length * TYPES];
+		size = 0;
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldKeys[slot] == FREE)
+				continue;
+			int target = slot(oldKeys[slot], true);
+			System.arraycopy(oldCounts, slot * TYPES, counts, target * TYPES, TYPES);
+		}
+	}
+
+}
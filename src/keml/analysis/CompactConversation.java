@@ -0,0 +1,224 @@
+package keml.analysis;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import keml.Conversation;
+import keml.Information;
+import keml.InformationLink;
+import keml.InformationLinkType;
+import keml.Message;
+import keml.NewInformation;
+import keml.PreKnowledge;
+import keml.ReceiveMessage;
+
+// everything the analysis needs from a conversation in primitive arrays, without the EMF model
+// nodes are numbered like in ArgumentationGraph: pre knowledge first, then new information in receive order
+public final class CompactConversation {
+
+	final String title;
+
+	// per partner, index is the partner id
+	final String[] partners;
+	final int[] sends;
+	final int[] receives;
+	final int[] interrupted;
+
+	// per node
+	final int preKnowledgeCount;
+	final String[] messages;
+	final int[] timing; // -1 for pre knowledge
+	final int[] partnerOf; // -1 for the author (pre knowledge)
+	final boolean[] instruction;
+	final float[] feltTrustImmediately; // NaN if not given
+	final float[] feltTrustAfterwards;
+	final int[] repetitions;
+
+	// per link, in the order of the incoming links of each target
+	final int[] linkSource;
+	final int[] linkTarget;
+	final byte[] linkType; // ordinal of InformationLinkType
+
+	// when what arrived, for TrustTimeline: timing per receive message in document order, the receive message of each
+	// node (-1 for pre knowledge) and per repetition the receive message and the repeated node
+	final int[] receiveTiming;
+	final int[] receiveOf;
+	final int[] repeatReceive;
+	final int[] repeatNode;
+
+	CompactConversation(String title, String[] partners, int[] sends, int[] receives, int[] interrupted,
+			int preKnowledgeCount, String[] messages, int[] timing, int[] partnerOf, boolean[] instruction,
+			float[] feltTrustImmediately, float[] feltTrustAfterwards, int[] repetitions, int[] linkSource,
+			int[] linkTarget, byte[] linkType, int[] receiveTiming, int[] receiveOf, int[] repeatReceive,
+			int[] repeatNode) {
+		this.title = title;
+		this.partners = partners;
+		this.sends = sends;
+		this.receives = receives;
+		this.interrupted = interrupted;
+		this.preKnowledgeCount = preKnowledgeCount;
+		this.messages = messages;
+		this.timing = timing;
+		this.partnerOf = partnerOf;
+		this.instruction = instruction;
+		this.feltTrustImmediately = feltTrustImmediately;
+		this.feltTrustAfterwards = feltTrustAfterwards;
+		this.repetitions = repetitions;
+		this.linkSource = linkSource;
+		this.linkTarget = linkTarget;
+		this.linkType = linkType;
+		this.receiveTiming = receiveTiming;
+		this.receiveOf = receiveOf;
+		this.repeatReceive = repeatReceive;
+		this.repeatNode = repeatNode;
+	}
+
+	// copies what the analysis needs out of a loaded model
+	public static CompactConversation of(Conversation conv) {
+		List<String> partnerNames = ConversationAnalyser.getPartnerNames(conv);
+		List<ReceiveMessage> receiveMessages = ConversationAnalyser.getReceives(conv);
+		List<NewInformation> newInfos = ConversationAnalyser.getNewInfos(receiveMessages);
+		List<PreKnowledge> preKnowledge = conv.getAuthor().getPreknowledge();
+
+		int p = partnerNames.size();
+		HashMap<String, Integer> partnerIds = new HashMap<>();
+		for (int i = 0; i < p; i++) {
+			partnerIds.putIfAbsent(partnerNames.get(i), i);
+		}
+		int[] sends = new int[p];
+		int[] receives = new int[p];
+		int[] interrupted = new int[p];
+		for (Message m : conv.getAuthor().getMessages()) {
+			int partner = partnerIds.get(m.getCounterPart().getName());
+			if (m instanceof ReceiveMessage r) {
+				receives[partner]++;
+				if (r.isIsInterrupted())
+					interrupted[partner]++;
+			} else {
+				sends[partner]++;
+			}
+		}
+
+		int n = preKnowledge.size() + newInfos.size();
+		Information[] nodes = new Information[n];
+		HashMap<Information, Integer> ids = new HashMap<>(n * 2);
+		String[] messages = new String[n];
+		int[] timing = new int[n];
+		int[] partnerOf = new int[n];
+		boolean[] instruction = new boolean[n];
+		float[] fTi = new float[n];
+		float[] fTa = new float[n];
+		int[] repetitions = new int[n];
+		int id = 0;
+		for (PreKnowledge pre : preKnowledge) {
+			timing[id] = -1;
+			partnerOf[id] = -1;
+			nodes[id] = pre;
+			ids.put(pre, id++);
+		}
+		for (NewInformation info : newInfos) {
+			timing[id] = info.getTiming();
+			partnerOf[id] = partnerIds.get(info.getSourceConversationPartner().getName());
+			nodes[id] = info;
+			ids.put(info, id++);
+		}
+		int[] receiveTiming = new int[receiveMessages.size()];
+		int[] receiveOf = new int[n];
+		Arrays.fill(receiveOf, 0, preKnowledge.size(), -1);
+		int repeatCount = 0;
+		for (int r = 0, node = preKnowledge.size(); r < receiveMessages.size(); r++) {
+			ReceiveMessage receive = receiveMessages.get(r);
+			receiveTiming[r] = receive.getTiming();
+			for (int k = 0; k < receive.getGenerates().size(); k++) {
+				receiveOf[node++] = r;
+			}
+			repeatCount += receive.getRepeats().size();
+		}
+		int[] repeatReceive = new int[repeatCount];
+		int[] repeatNode = new int[repeatCount];
+		repeatCount = 0;
+		for (int r = 0; r < receiveMessages.size(); r++) {
+			for (Information repeated : receiveMessages.get(r).getRepeats()) {
+				Integer node = ids.get(repeated);
+				if (node != null) {
+					repeatReceive[repeatCount] = r;
+					repeatNode[repeatCount++] = node;
+				}
+			}
+		}
+		int links = 0;
+		for (int i = 0; i < n; i++) {
+			Information info = nodes[i];
+			messages[i] = info.getMessage();
+			instruction[i] = info.isIsInstruction();
+			fTi[i] = orNaN(info.getFeltTrustImmediately());
+			fTa[i] = orNaN(info.getFeltTrustAfterwards());
+			repetitions[i] = info.getRepeatedBy().size();
+			for (InformationLink link : info.getTargetedBy()) {
+				if (ids.containsKey(link.getSource()))
+					links++;
+			}
+		}
+		int[] linkSource = new int[links];
+		int[] linkTarget = new int[links];
+		byte[] linkType = new byte[links];
+		int l = 0;
+		for (int i = 0; i < n; i++) {
+			for (InformationLink link : nodes[i].getTargetedBy()) {
+				Integer source = ids.get(link.getSource());
+				if (source != null) {
+					linkSource[l] = source;
+					linkTarget[l] = i;
+					linkType[l++] = (byte) link.getType().ordinal();
+				}
+			}
+		}
+		return new CompactConversation(conv.getTitle(), partnerNames.toArray(new String[0]), sends, receives,
+				interrupted, preKnowledge.size(), messages, timing, partnerOf, instruction, fTi, fTa, repetitions,
+				linkSource, linkTarget, linkType, receiveTiming, receiveOf, Arrays.copyOf(repeatReceive, repeatCount),
+				Arrays.copyOf(repeatNode, repeatCount));
+	}
+
+	private static float orNaN(Float f) {
+		return f != null ? f.floatValue() : Float.NaN;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public List<String> getPartnerNames() {
+		return List.of(partners);
+	}
+
+	public int size() {
+		return messages.length;
+	}
+
+	public int getPreKnowledgeCount() {
+		return preKnowledgeCount;
+	}
+
+	public int getLinkCount() {
+		return linkSource.length;
+	}
+
+	public int getReceiveCount() {
+		return Arrays.stream(receives).sum();
+	}
+
+	InformationLinkType linkType(int link) {
+		return InformationLinkType.values()[linkType[link]];
+	}
+
+	// number of incoming links per node (#Arg)
+	int[] argumentCounts() {
+		int[] res = new int[messages.length];
+		for (int target : linkTarget) {
+			res[target]++;
+		}
+		return res;
+	}
+
+}
@@ -5,35 +5,34 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
 import keml.Conversation;
-import keml.Message;
 import keml.NewInformation;
 import keml.ReceiveMessage;
-import keml.SendMessage;
 
 public class ConversationAnalyser {
 
-	Conversation conv;
 	static String auth = "Author";
 	List<String> partners; // works as headers
-	List<ReceiveMessage> receives; // starting point for work on knowledge part
+	ConversationStatistics statistics; // all counts, gathered in one pass
 	InformationPartAnalyser infoAnalyser;
 
 	public ConversationAnalyser(Conversation conv) {
-		this.conv = conv;
-		this.partners = getPartnerNames(conv); // works as header row
-		this.receives = getReceives(conv);
-		infoAnalyser = new InformationPartAnalyser(partners, receives, conv.getAuthor().getPreknowledge());
+		this(ConversationStatistics.of(conv));
+	}
+
+	public ConversationAnalyser(CompactConversation compact) {
+		this(ConversationStatistics.of(compact));
+	}
+
+	public ConversationAnalyser(ConversationStatistics statistics) {
+		this.statistics = statistics;
+		this.partners = statistics.partners; // works as header row
+		infoAnalyser = new InformationPartAnalyser(statistics);
 	}
 
 	public static List<String> getPartnerNames(Conversation conv) {
@@ -55,6 +54,13 @@ public class ConversationAnalyser {
 		writeArgumentationCSV(basePath + "-arguments.csv");
 	}
 
+	// with sparse, also the links per source and target entry, see writeSparseArgumentationCSV
+	public void createCSVs(String basePath, boolean sparse) throws IOException {
+		createCSVs(basePath);
+		if (sparse)
+			writeSparseArgumentationCSV(basePath + "-arguments-sparse.csv");
+	}
+
 	public void writeGeneralCSV(String path) throws IOException {
 
 		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
@@ -69,18 +75,10 @@ public class ConversationAnalyser {
 			ArrayList<String> headers = new ArrayList<String>(partners);
 			headers.add("Author");
 			csvPrinter.printRecord(headers);
-			HashMap<InformationType, Map<String, Long>> newInfos = countInformationByPartner();
-			// Long allNew =
-			// newInfos.get(InformationType.OVERALL).values().stream().collect(Collectors.reducing(0L,
-			// (x, y) -> Long.sum(x, y)));
-			// csvPrinter.printRecord("NewInformation", allNew);
-			// printPartnerHeaderRow(csvPrinter);
-			// writeForPartners(newInfos.get(InformationType.OVERALL), "All", csvPrinter,
-			// 0L);
-			writeForPartners(newInfos.get(InformationType.FACT), "Facts", csvPrinter, 0L, true);
-			writeForPartners(newInfos.get(InformationType.INSTRUCTION), "Instructions", csvPrinter, 0L, true);
+			writeForPartners(statistics.facts, "Facts", csvPrinter);
+			writeForPartners(statistics.instructions, "Instructions", csvPrinter);
 			// csvPrinter.printRecord("Trust:");
-			csvPrinter.printRecord("Repetitions", countRepetitions());
+			csvPrinter.printRecord("Repetitions", statistics.getRepetitions());
 			csvPrinter.flush();
 		}
 		System.out.println("Wrote general analysis to " + path);
@@ -95,93 +93,44 @@ public class ConversationAnalyser {
 		System.out.println("Wrote argumentation analysis to " + path);
 	}
 
+	// the argumentation counts in long format, supplements included: one record per source and target entry with
+	// at least one link instead of the full matrix
+	public void writeSparseArgumentationCSV(String path) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			infoAnalyser.writeInformationLinks(csvPrinter);
+			csvPrinter.flush();
+		}
+		System.out.println("Wrote sparse argumentation analysis to " + path);
+	}
+
 	private void printPartnerHeaderRow(CSVPrinter csvPrinter) throws IOException {
 		csvPrinter.print("");
 		csvPrinter.printRecord(partners);
 	}
 
-	enum InformationType {
-		INSTRUCTION, FACT, OVERALL;
-	}
-
-	private HashMap<InformationType, Map<String, Long>> countInformationByPartner() {
-		List<String> instructions = new ArrayList<String>();
-		List<String> facts = new ArrayList<String>();
-		List<String> overall = new ArrayList<String>(); // could be computed from the other two if we ever ran into
-														// memory issues
-
-		receives.forEach(msg -> {
-			String partner = msg.getCounterPart().getName();
-			msg.getGenerates().forEach(info -> {
-				overall.add(partner);
-				if (info.isIsInstruction()) {
-					instructions.add(partner);
-				} else {
-					facts.add(partner);
-				}
-			});
-		});
-
-		Map<String, Long> factsMap = countFromStringStream(facts.stream());
-		Map<String, Long> instrMap = countFromStringStream(instructions.stream());
-		Map<String, Long> overallMap = countFromStringStream(overall.stream());
-
-		// *** add preknowledge (as Author) ***
-		long allPre = conv.getAuthor().getPreknowledge().size();
-		long instructionsPre = conv.getAuthor().getPreknowledge().stream().filter(p -> p.isIsInstruction()).count();
-		factsMap.put(auth, allPre - instructionsPre);
-		instrMap.put(auth, instructionsPre);
-		overallMap.put(auth, allPre);
-
-		// ** combine Maps **
-		HashMap<InformationType, Map<String, Long>> res = new HashMap<InformationType, Map<String, Long>>();
-		res.put(InformationType.FACT, factsMap);
-		res.put(InformationType.INSTRUCTION, instrMap);
-		res.put(InformationType.OVERALL, overallMap);
-		return res;
-	}
-
-	private Integer countRepetitions() {
-		return receives.stream().mapToInt(s -> s.getRepeats().size()).sum();
-	}
-
 	private void writeMessageCounts(CSVPrinter csvPrinter) throws IOException {
-		Map<Boolean, List<Message>> isSend = conv.getAuthor().getMessages().stream()
-				.collect(Collectors.partitioningBy(m -> m instanceof SendMessage));
-		var sent = countByName(isSend.get(true));
-		var receive = countByName(isSend.get(false));
-		var interrupted = countByName(isSend.get(false).stream().filter(msg -> {
-			ReceiveMessage m = (ReceiveMessage) msg;
-			return m.isIsInterrupted();
-		}).toList());
-		writeForPartners(sent, "SendMsg", csvPrinter, 0L, false);
-		writeForPartners(receive, "ReceiveMsg", csvPrinter, 0L, false);
-		writeForPartners(interrupted, "Interrupted", csvPrinter, 0L, false);
+		writeForPartners(statistics.sends, "SendMsg", csvPrinter);
+		writeForPartners(statistics.receives, "ReceiveMsg", csvPrinter);
+		writeForPartners(statistics.interrupted, "Interrupted", csvPrinter);
 	}
 
-	private static Map<String, Long> countByName(List<Message> msgs) {
-		return msgs.stream().collect(Collectors.groupingBy(s -> s.getCounterPart().getName(), Collectors.counting()));
-	}
-
-	private static Map<String, Long> countFromStringStream(Stream<String> stream) {
-		return stream.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+	// write according to header line partners into line, content is indexed by partner id
+	private void writeForPartners(int[] content, String firstColumn, CSVPrinter csvPrinter) throws IOException {
+		csvPrinter.print(firstColumn);
+		for (int p = 0; p < partners.size(); p++) {
+			csvPrinter.print((long) content[statistics.partnerId(p)]);
+		}
+		csvPrinter.printRecord();
 	}
 
-	// write according to header line partners into line
-	private <T> void writeForPartners(Map<String, T> content, String firstColumn, CSVPrinter csvPrinter, T defaultValue,
-			boolean withAuthor) throws IOException {
+	// like above with the author in the last column
+	private void writeForPartners(long[] content, String firstColumn, CSVPrinter csvPrinter) throws IOException {
 		csvPrinter.print(firstColumn);
-		partners.forEach(p -> {
-			try {
-				csvPrinter.print(content.getOrDefault(p, defaultValue));
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-		});
-		if (withAuthor) {
-			csvPrinter.print(content.getOrDefault(auth, defaultValue));
+		for (int p = 0; p < partners.size(); p++) {
+			csvPrinter.print(content[statistics.partnerId(p)]);
 		}
+		csvPrinter.print(content[partners.size()]);
 		csvPrinter.printRecord();
 	}
 
@@ -0,0 +1,275 @@
+package keml.analysis;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import keml.InformationLinkType;
+
+// binary copies of CompactConversations next to the analysis outputs (--graph-cache), so that analysing the same
+// content again, e.g. with other weights or trust configurations, skips loading the KEML file altogether
+// one file <content hash>.bin per conversation, read through a memory mapped FileChannel
+// layout, little endian: magic, version and the counts, then all int and float arrays, the byte arrays and at the
+// end the strings as byte length (-1 for null) and UTF-8 bytes
+// the indexes between the arrays are checked on reading, a damaged file is a miss instead of failing the analysis
+public final class ConversationCache {
+
+	static final int MAGIC = 0x4B454D43; // KEMC
+	// change when the layout or CompactConversation changes, older files are then ignored and overwritten
+	static final int VERSION = 1;
+	static String folderName = "graph-cache";
+
+	private final Path folder;
+
+	public ConversationCache(Path folder) {
+		this.folder = folder;
+	}
+
+	// the cache folder in the analysis folder of AnalysisProvider
+	public static ConversationCache of(AnalysisOptions options) {
+		return new ConversationCache(Paths.get(options.folder, "analysis", folderName));
+	}
+
+	Path path(String hash) {
+		return folder.resolve(hash + ".bin");
+	}
+
+	// the conversation stored for the content hash, null if there is none or it cannot be used
+	public CompactConversation read(String hash) {
+		try (FileChannel channel = FileChannel.open(path(hash), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return decode(buffer.order(ByteOrder.LITTLE_ENDIAN));
+		} catch (IOException e) {
+			// missing or unreadable, the KEML file is loaded instead
+			return null;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			// cut off or damaged, it is written again
+			return null;
+		}
+	}
+
+	// written to a temporary file first, so that concurrent readers and writers of the same hash never see half of it
+	public void write(String hash, CompactConversation conv) throws IOException {
+		Files.createDirectories(folder);
+		byte[] title = utf8(conv.title);
+		byte[][] partners = utf8(conv.partners);
+		byte[][] messages = utf8(conv.messages);
+		int n = conv.size();
+		int links = conv.getLinkCount();
+		int size = 4 * (8 + 3 * conv.partners.length + 6 * n + 2 * links + conv.receiveTiming.length
+				+ 2 * conv.repeatNode.length) + n + links + size(title) + size(partners) + size(messages);
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(conv.partners.length).putInt(n).putInt(conv.preKnowledgeCount).putInt(links)
+				.putInt(conv.receiveTiming.length).putInt(conv.repeatNode.length);
+		putInts(buffer, conv.sends);
+		putInts(buffer, conv.receives);
+		putInts(buffer, conv.interrupted);
+		putInts(buffer, conv.timing);
+		putInts(buffer, conv.partnerOf);
+		putInts(buffer, conv.repetitions);
+		putInts(buffer, conv.receiveOf);
+		putFloats(buffer, conv.feltTrustImmediately);
+		putFloats(buffer, conv.feltTrustAfterwards);
+		putInts(buffer, conv.linkSource);
+		putInts(buffer, conv.linkTarget);
+		putInts(buffer, conv.receiveTiming);
+		putInts(buffer, conv.repeatReceive);
+		putInts(buffer, conv.repeatNode);
+		for (boolean b : conv.instruction) {
+			buffer.put((byte) (b ? 1 : 0));
+		}
+		buffer.put(conv.linkType);
+		putString(buffer, title);
+		for (byte[] s : partners) {
+			putString(buffer, s);
+		}
+		for (byte[] s : messages) {
+			putString(buffer, s);
+		}
+		buffer.flip();
+
+		Path tmp = Files.createTempFile(folder, hash, ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			try {
+				Files.move(tmp, path(hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, path(hash), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static CompactConversation decode(ByteBuffer buffer) {
+		if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			return null;
+		int p = buffer.getInt();
+		int n = buffer.getInt();
+		int preKnowledgeCount = buffer.getInt();
+		int links = buffer.getInt();
+		int receiveMessages = buffer.getInt();
+		int repeats = buffer.getInt();
+		if (preKnowledgeCount < 0 || preKnowledgeCount > n)
+			throw new IllegalArgumentException("Pre knowledge count " + preKnowledgeCount + " of " + n + " nodes");
+		int[] sends = getInts(buffer, p);
+		int[] receives = getInts(buffer, p);
+		int[] interrupted = getInts(buffer, p);
+		int[] timing = getInts(buffer, n);
+		int[] partnerOf = getInts(buffer, n);
+		int[] repetitions = getInts(buffer, n);
+		int[] receiveOf = getInts(buffer, n);
+		float[] fTi = getFloats(buffer, n);
+		float[] fTa = getFloats(buffer, n);
+		int[] linkSource = getInts(buffer, links);
+		int[] linkTarget = getInts(buffer, links);
+		int[] receiveTiming = getInts(buffer, receiveMessages);
+		int[] repeatReceive = getInts(buffer, repeats);
+		int[] repeatNode = getInts(buffer, repeats);
+		boolean[] instruction = new boolean[count(buffer, n, 1)];
+		for (int i = 0; i < n; i++) {
+			instruction[i] = buffer.get() != 0;
+		}
+		byte[] linkType = new byte[count(buffer, links, 1)];
+		buffer.get(linkType);
+		checkIndexes(p, n, preKnowledgeCount, timing, partnerOf, receiveOf, linkSource, linkTarget, linkType,
+				receiveTiming, repeatReceive, repeatNode);
+		String title = getString(buffer);
+		String[] partners = new String[p];
+		for (int i = 0; i < p; i++) {
+			partners[i] = getString(buffer);
+		}
+		String[] messages = new String[n];
+		for (int i = 0; i < n; i++) {
+			messages[i] = getString(buffer);
+		}
+		if (buffer.hasRemaining())
+			return null;
+		return new CompactConversation(title, partners, sends, receives, interrupted, preKnowledgeCount, messages,
+				timing, partnerOf, instruction, fTi, fTa, repetitions, linkSource, linkTarget, linkType, receiveTiming,
+				receiveOf, repeatReceive, repeatNode);
+	}
+
+	// the invariants of CompactConversation that the analysis indexes by
+	private static void checkIndexes(int p, int n, int preKnowledgeCount, int[] timing, int[] partnerOf,
+			int[] receiveOf, int[] linkSource, int[] linkTarget, byte[] linkType, int[] receiveTiming,
+			int[] repeatReceive, int[] repeatNode) {
+		checkRange(partnerOf, -1, p, "Partner");
+		checkRange(linkSource, 0, n, "Link source");
+		checkRange(linkTarget, 0, n, "Link target");
+		checkRange(repeatReceive, 0, receiveTiming.length, "Receive message of a repetition");
+		checkRange(repeatNode, 0, n, "Repeated node");
+		for (int l = 0; l < linkType.length; l++) {
+			if (linkType[l] < 0 || linkType[l] >= InformationLinkType.values().length)
+				throw new IllegalArgumentException("Link type " + linkType[l]);
+			// ArgumentationGraph.compile takes the links as grouped by target
+			if (l > 0 && linkTarget[l] < linkTarget[l - 1])
+				throw new IllegalArgumentException("Links not grouped by target");
+		}
+		// pre knowledge came with no receive message, new information with one of the same timing
+		for (int i = 0; i < n; i++) {
+			int receive = receiveOf[i];
+			if (i < preKnowledgeCount ? receive != -1
+					: receive < 0 || receive >= receiveTiming.length || receiveTiming[receive] != timing[i])
+				throw new IllegalArgumentException("Receive message " + receive + " of node " + i);
+		}
+	}
+
+	private static void checkRange(int[] a, int from, int to, String what) {
+		for (int v : a) {
+			if (v < from || v >= to)
+				throw new IllegalArgumentException(what + " " + v + " outside of " + from + " ... " + (to - 1));
+		}
+	}
+
+	// ************* arrays and strings *****************
+
+	// a count read from the file, checked against the rest of it before an array of that many elements of the given
+	// size in bytes is allocated
+	private static int count(ByteBuffer buffer, int count, int size) {
+		if (count < 0 || (long) count * size > buffer.remaining())
+			throw new IllegalArgumentException("Count " + count + " does not fit into the cached file");
+		return count;
+	}
+
+	private static void putInts(ByteBuffer buffer, int[] a) {
+		buffer.asIntBuffer().put(a);
+		buffer.position(buffer.position() + 4 * a.length);
+	}
+
+	private static void putFloats(ByteBuffer buffer, float[] a) {
+		buffer.asFloatBuffer().put(a);
+		buffer.position(buffer.position() + 4 * a.length);
+	}
+
+	private static int[] getInts(ByteBuffer buffer, int length) {
+		int[] res = new int[count(buffer, length, 4)];
+		buffer.asIntBuffer().get(res);
+		buffer.position(buffer.position() + 4 * length);
+		return res;
+	}
+
+	private static float[] getFloats(ByteBuffer buffer, int length) {
+		float[] res = new float[count(buffer, length, 4)];
+		buffer.asFloatBuffer().get(res);
+		buffer.position(buffer.position() + 4 * length);
+		return res;
+	}
+
+	private static byte[] utf8(String s) {
+		return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[][] utf8(String[] strings) {
+		byte[][] res = new byte[strings.length][];
+		for (int i = 0; i < strings.length; i++) {
+			res[i] = utf8(strings[i]);
+		}
+		return res;
+	}
+
+	private static int size(byte[] s) {
+		return 4 + (s == null ? 0 : s.length);
+	}
+
+	private static int size(byte[][] strings) {
+		int res = 0;
+		for (byte[] s : strings) {
+			res += size(s);
+		}
+		return res;
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] s) {
+		if (s == null) {
+			buffer.putInt(-1);
+		} else {
+			buffer.putInt(s.length).put(s);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[count(buffer, length, 1)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,287 @@
+package keml.analysis;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+
+import keml.Author;
+import keml.Conversation;
+import keml.ConversationPartner;
+import keml.Information;
+import keml.InformationLink;
+import keml.InformationLinkType;
+import keml.KemlFactory;
+import keml.KemlPackage;
+import keml.NewInformation;
+import keml.PreKnowledge;
+import keml.ReceiveMessage;
+import keml.SendMessage;
+
+// builds synthetic conversations in memory for scale and stress tests, the same seed always gives the same conversation
+public class ConversationGenerator {
+
+	public enum Shape {
+		CHAIN, // nodes on depth levels, links only from one level to the next (depth = nodes gives one long chain)
+		FAN_IN, // many sources pointing to a few hubs at the end of the conversation
+		RANDOM_DAG, // random links, acyclic but not aligned with the message order
+		CYCLIC; // a random DAG plus pairs of opposite links that form cycles
+	}
+
+	long seed;
+	int partners = 2;
+	int messages = 10; // receive messages, each one answers a send message
+	int newInfos = 30;
+	int preKnowledge = 5;
+	int repetitions = 5;
+	int links = 60;
+	int depth = 0; // levels of CHAIN, 0 means one level per node
+	int cycles = 1; // cycles added in CYCLIC
+	Shape shape = Shape.RANDOM_DAG;
+
+	public ConversationGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public ConversationGenerator partners(int partners) {
+		this.partners = partners;
+		return this;
+	}
+
+	public ConversationGenerator messages(int messages) {
+		this.messages = messages;
+		return this;
+	}
+
+	public ConversationGenerator newInformation(int newInfos) {
+		this.newInfos = newInfos;
+		return this;
+	}
+
+	public ConversationGenerator preKnowledge(int preKnowledge) {
+		this.preKnowledge = preKnowledge;
+		return this;
+	}
+
+	public ConversationGenerator repetitions(int repetitions) {
+		this.repetitions = repetitions;
+		return this;
+	}
+
+	public ConversationGenerator links(int links) {
+		this.links = links;
+		return this;
+	}
+
+	public ConversationGenerator shape(Shape shape) {
+		this.shape = shape;
+		return this;
+	}
+
+	public ConversationGenerator depth(int depth) {
+		this.depth = depth;
+		return this;
+	}
+
+	public ConversationGenerator cycles(int cycles) {
+		this.cycles = cycles;
+		return this;
+	}
+
+	public Conversation generate() {
+		if (partners < 1 || messages < 1 || newInfos < 0 || preKnowledge < 0)
+			throw new IllegalArgumentException("A conversation needs at least one partner and one message");
+		SplittableRandom random = new SplittableRandom(seed);
+		KemlFactory factory = KemlFactory.eINSTANCE;
+
+		Conversation conv = factory.createConversation();
+		conv.setTitle("generated-" + seed);
+		Author author = factory.createAuthor();
+		author.setName("Author");
+		conv.setAuthor(author);
+		for (int p = 0; p < partners; p++) {
+			ConversationPartner partner = factory.createConversationPartner();
+			partner.setName(p == 0 ? "LLM" : "Partner" + p);
+			conv.getConversationPartners().add(partner);
+		}
+
+		// nodes in conversation order: pre knowledge, then new information as generated by the receive messages
+		List<Information> nodes = new ArrayList<>(preKnowledge + newInfos);
+		for (int i = 0; i < preKnowledge; i++) {
+			PreKnowledge pre = factory.createPreKnowledge();
+			pre.setMessage("Pre knowledge " + i);
+			fill(pre, random);
+			author.getPreknowledge().add(pre);
+			nodes.add(pre);
+		}
+		List<ReceiveMessage> receives = new ArrayList<>(messages);
+		List<Integer> knownBefore = new ArrayList<>(messages); // nodes that exist before each receive message
+		int timing = 0;
+		for (int m = 0; m < messages; m++) {
+			ConversationPartner partner = conv.getConversationPartners().get(random.nextInt(partners));
+			SendMessage send = factory.createSendMessage();
+			send.setCounterPart(partner);
+			send.setTiming(timing++);
+			send.setContent("Question " + m);
+			author.getMessages().add(send);
+			ReceiveMessage receive = factory.createReceiveMessage();
+			receive.setCounterPart(partner);
+			receive.setTiming(timing++);
+			receive.setContent("Answer " + m);
+			receive.setIsInterrupted(random.nextInt(10) == 0);
+			author.getMessages().add(receive);
+			knownBefore.add(nodes.size());
+			receives.add(receive);
+			// spread the new information evenly over all messages
+			int generated = (int) ((long) newInfos * (m + 1) / messages - (long) newInfos * m / messages);
+			for (int k = 0; k < generated; k++) {
+				NewInformation info = factory.createNewInformation();
+				info.setMessage("Information " + (nodes.size() - preKnowledge) + " from message " + m);
+				fill(info, random);
+				receive.getGenerates().add(info);
+				nodes.add(info);
+			}
+		}
+
+		// a message can only repeat what was known before it
+		for (int r = 0; r < repetitions; r++) {
+			int m = random.nextInt(messages);
+			if (knownBefore.get(m) > 0) {
+				receives.get(m).getRepeats().add(nodes.get(random.nextInt(knownBefore.get(m))));
+			}
+		}
+
+		if (nodes.size() > 1) {
+			createLinks(nodes, random, factory);
+		}
+		return conv;
+	}
+
+	private void fill(Information info, SplittableRandom random) {
+		info.setIsInstruction(random.nextInt(4) == 0);
+		if (random.nextBoolean()) {
+			info.setFeltTrustImmediately((float) random.nextDouble(-1.0, 1.0));
+			info.setFeltTrustAfterwards((float) random.nextDouble(-1.0, 1.0));
+		}
+	}
+
+	private void createLinks(List<Information> nodes, SplittableRandom random, KemlFactory factory) {
+		int n = nodes.size();
+		switch (shape) {
+		case CHAIN:
+			int levels = depth > 0 ? Math.min(depth, n) : n;
+			if (levels < 2)
+				break;
+			int levelSize = n / levels;
+			// the nodes below the first level get their links in turn, so with enough links the full depth exists
+			for (int i = levelSize, l = 0; l < links; i = i + 1 < n ? i + 1 : levelSize, l++) {
+				int level = Math.min(i / levelSize, levels - 1);
+				int from = (level - 1) * levelSize;
+				link(nodes.get(from + random.nextInt(levelSize)), nodes.get(i), random, factory);
+			}
+			break;
+		case FAN_IN:
+			// hubs are the last nodes, each gets at most about a thousand links
+			int hubs = Math.max(1, Math.min(n - 1, links / 1000));
+			for (int l = 0; l < links; l++) {
+				int hub = n - 1 - random.nextInt(hubs);
+				link(nodes.get(random.nextInt(n - hubs)), nodes.get(hub), random, factory);
+			}
+			break;
+		case RANDOM_DAG:
+		case CYCLIC:
+			// links follow a random order of the nodes, which keeps the graph acyclic
+			int[] rank = shuffledRanks(n, random);
+			for (int l = 0; l < links; l++) {
+				int a = random.nextInt(n);
+				int b = random.nextInt(n - 1);
+				if (b >= a)
+					b++;
+				if (rank[a] < rank[b]) {
+					link(nodes.get(a), nodes.get(b), random, factory);
+				} else {
+					link(nodes.get(b), nodes.get(a), random, factory);
+				}
+			}
+			if (shape == Shape.CYCLIC) {
+				// a pair of opposite links per cycle: a -> b -> a
+				for (int c = 0; c < cycles; c++) {
+					int a = random.nextInt(n);
+					int b = random.nextInt(n - 1);
+					if (b >= a)
+						b++;
+					link(nodes.get(a), nodes.get(b), random, factory);
+					link(nodes.get(b), nodes.get(a), random, factory);
+				}
+			}
+			break;
+		}
+	}
+
+	private static int[] shuffledRanks(int n, SplittableRandom random) {
+		int[] rank = new int[n];
+		for (int i = 0; i < n; i++) {
+			rank[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = rank[i];
+			rank[i] = rank[j];
+			rank[j] = tmp;
+		}
+		return rank;
+	}
+
+	private static void link(Information source, Information target, SplittableRandom random, KemlFactory factory) {
+		InformationLink link = factory.createInformationLink();
+		link.setType(InformationLinkType.values()[random.nextInt(InformationLinkType.values().length)]);
+		link.setSource(source);
+		link.setTarget(target);
+	}
+
+	// stores the conversation as KEML (XMI) file
+	public static void write(Conversation conv, Path file) throws IOException {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getPackageRegistry().put(KemlPackage.eNS_URI, KemlPackage.eINSTANCE);
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		Resource resource = resourceSet.createResource(URI.createFileURI(file.toAbsolutePath().toString()));
+		resource.getContents().add(conv);
+		resource.save(null);
+	}
+
+	// arguments: target file, then name=value pairs for seed, partners, messages, newInformation, preKnowledge,
+	// repetitions, links, shape, depth and cycles, e.g. out.keml seed=7 newInformation=100000 links=1000000 shape=CHAIN
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0)
+			throw new IllegalArgumentException("Please give the file to write");
+		ConversationGenerator generator = new ConversationGenerator(1);
+		for (int i = 1; i < args.length; i++) {
+			String[] kv = args[i].split("=", 2);
+			if (kv.length != 2)
+				throw new IllegalArgumentException("Expected name=value but got " + args[i]);
+			switch (kv[0]) {
+			case "seed" -> generator.seed = Long.parseLong(kv[1]);
+			case "partners" -> generator.partners(Integer.parseInt(kv[1]));
+			case "messages" -> generator.messages(Integer.parseInt(kv[1]));
+			case "newInformation" -> generator.newInformation(Integer.parseInt(kv[1]));
+			case "preKnowledge" -> generator.preKnowledge(Integer.parseInt(kv[1]));
+			case "repetitions" -> generator.repetitions(Integer.parseInt(kv[1]));
+			case "links" -> generator.links(Integer.parseInt(kv[1]));
+			case "shape" -> generator.shape(Shape.valueOf(kv[1]));
+			case "depth" -> generator.depth(Integer.parseInt(kv[1]));
+			case "cycles" -> generator.cycles(Integer.parseInt(kv[1]));
+			default -> throw new IllegalArgumentException("Unknown parameter " + kv[0]);
+			}
+		}
+		write(generator.generate(), Path.of(args[0]));
+		System.out.println("Wrote generated conversation to " + args[0]);
+	}
+
+}
@@ -0,0 +1,299 @@
+package keml.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import keml.Conversation;
+import keml.Information;
+import keml.InformationLink;
+import keml.InformationLinkType;
+import keml.Message;
+import keml.NewInformation;
+import keml.PreKnowledge;
+import keml.ReceiveMessage;
+import keml.SendMessage;
+
+// all counts of the general and the argumentation CSV, gathered in one traversal of the conversation
+// partners are looked up once by name in a table, all counts are primitive arrays indexed by partner id
+// (the position of the first partner with that name, like partners.indexOf)
+// statistics of several conversations merge into corpus totals, see merge
+public final class ConversationStatistics {
+
+	final List<String> partners;
+	private final HashMap<String, Integer> partnerIds;
+
+	// per partner id
+	final int[] sends;
+	final int[] receives;
+	final int[] interrupted;
+	// per partner id, the author (pre knowledge) at partners.size()
+	final long[] facts;
+	final long[] instructions;
+	int repetitions = 0;
+
+	// fact and instruction row and column for each partner and the author, see InformationPartAnalyser.headers()
+	final int dimension;
+	final ArgumentationMatrix arguments;
+
+	private ConversationStatistics(List<String> partners) {
+		this.partners = partners;
+		int p = partners.size();
+		partnerIds = new HashMap<>(p * 2);
+		for (int i = 0; i < p; i++) {
+			partnerIds.putIfAbsent(partners.get(i), i);
+		}
+		sends = new int[p];
+		receives = new int[p];
+		interrupted = new int[p];
+		facts = new long[p + 1];
+		instructions = new long[p + 1];
+		dimension = (p + 1) * 2;
+		arguments = new ArgumentationMatrix(dimension);
+	}
+
+	public static ConversationStatistics of(Conversation conv) {
+		ConversationStatistics res = new ConversationStatistics(ConversationAnalyser.getPartnerNames(conv));
+		int author = res.partners.size();
+		for (Message m : conv.getAuthor().getMessages()) {
+			int p = res.partnerId(m.getCounterPart().getName());
+			if (m instanceof SendMessage) {
+				if (p >= 0)
+					res.sends[p]++;
+			} else if (m instanceof ReceiveMessage receive) {
+				if (p >= 0) {
+					res.receives[p]++;
+					if (receive.isIsInterrupted())
+						res.interrupted[p]++;
+				}
+				res.repetitions += receive.getRepeats().size();
+				for (NewInformation info : receive.getGenerates()) {
+					if (p >= 0)
+						(info.isIsInstruction() ? res.instructions : res.facts)[p]++;
+					res.addConnections(info);
+				}
+			}
+		}
+		for (PreKnowledge pre : conv.getAuthor().getPreknowledge()) {
+			(pre.isIsInstruction() ? res.instructions : res.facts)[author]++;
+			res.addConnections(pre);
+		}
+		return res;
+	}
+
+	public static ConversationStatistics of(CompactConversation conv) {
+		ConversationStatistics res = new ConversationStatistics(conv.getPartnerNames());
+		int author = res.partners.size();
+		for (int p = 0; p < conv.partners.length; p++) {
+			int id = res.partnerId(conv.partners[p]);
+			res.sends[id] += conv.sends[p];
+			res.receives[id] += conv.receives[p];
+			res.interrupted[id] += conv.interrupted[p];
+		}
+		for (int i = 0; i < conv.size(); i++) {
+			int p = conv.partnerOf[i] < 0 ? author : res.partnerId(conv.partners[conv.partnerOf[i]]);
+			(conv.instruction[i] ? res.instructions : res.facts)[p]++;
+			res.repetitions += conv.repetitions[i];
+		}
+		for (int l = 0; l < conv.getLinkCount(); l++) {
+			res.count(res.indexOfNode(conv, conv.linkSource[l]), res.indexOfNode(conv, conv.linkTarget[l]),
+					conv.linkType(l));
+		}
+		return res;
+	}
+
+	// only the argumentation counts, from the model lists InformationPartAnalyser used to take
+	static ConversationStatistics connections(List<String> partners, List<NewInformation> newInfos,
+			List<PreKnowledge> preKnowledge) {
+		ConversationStatistics res = new ConversationStatistics(partners);
+		newInfos.forEach(res::addConnections);
+		preKnowledge.forEach(res::addConnections);
+		return res;
+	}
+
+	// totals of both, partners are aligned by name: first those of a, then the new ones of b in their order
+	// associative, so a corpus can be reduced in any grouping as long as the order of the conversations is kept
+	public static ConversationStatistics merge(ConversationStatistics a, ConversationStatistics b) {
+		List<String> partners = new ArrayList<>();
+		HashMap<String, Integer> ids = new HashMap<>();
+		for (ConversationStatistics s : List.of(a, b)) {
+			for (String name : s.partners) {
+				if (ids.putIfAbsent(name, partners.size()) == null)
+					partners.add(name);
+			}
+		}
+		ConversationStatistics res = new ConversationStatistics(partners);
+		res.add(a);
+		res.add(b);
+		return res;
+	}
+
+	// adds all counts of s, whose partners must all be partners of this
+	private void add(ConversationStatistics s) {
+		int author = partners.size();
+		// new id of each id of s, the author of s to the author here
+		int[] ids = new int[s.partners.size() + 1];
+		for (int p = 0; p < s.partners.size(); p++) {
+			ids[p] = partnerId(s.partners.get(p));
+		}
+		ids[s.partners.size()] = author;
+		// fact and instruction entry of each id of s
+		int[] index = new int[s.dimension];
+		for (int p = 0; p < ids.length; p++) {
+			index[2 * p] = 2 * ids[p];
+			index[2 * p + 1] = 2 * ids[p] + 1;
+		}
+		for (int p = 0; p < s.partners.size(); p++) {
+			if (s.partnerId(p) != p)
+				continue; // a second partner with the same name, its counts are at the first
+			sends[ids[p]] += s.sends[p];
+			receives[ids[p]] += s.receives[p];
+			interrupted[ids[p]] += s.interrupted[p];
+		}
+		for (int p = 0; p < ids.length; p++) {
+			if (p < s.partners.size() && s.partnerId(p) != p)
+				continue;
+			facts[ids[p]] += s.facts[p];
+			instructions[ids[p]] += s.instructions[p];
+		}
+		// a second partner with the same name has no cells, its links are counted at the first
+		arguments.add(s.arguments, index);
+		repetitions += s.repetitions;
+	}
+
+	// ************* counts per partner, in the order of the partners list *****************
+
+	public int getSends(int partner) {
+		return sends[partnerId(partner)];
+	}
+
+	public int getReceives(int partner) {
+		return receives[partnerId(partner)];
+	}
+
+	public int getInterrupted(int partner) {
+		return interrupted[partnerId(partner)];
+	}
+
+	// partners.size() is the author
+	public long getFacts(int partner) {
+		return facts[partner == partners.size() ? partner : partnerId(partner)];
+	}
+
+	public long getInstructions(int partner) {
+		return instructions[partner == partners.size() ? partner : partnerId(partner)];
+	}
+
+	public int getRepetitions() {
+		return repetitions;
+	}
+
+	// id of the partner at this position, partners with the same name share their counts
+	int partnerId(int partner) {
+		return partnerIds.get(partners.get(partner));
+	}
+
+	private int partnerId(String name) {
+		Integer id = partnerIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	// ************* argumentation *****************
+
+	// the outgoing links of one information
+	private void addConnections(Information info) {
+		int index = indexOfInfo(info);
+		for (InformationLink link : info.getCauses()) {
+			count(index, indexOfInfo(link.getTarget()), link.getType());
+		}
+	}
+
+	private void count(int index, int partnerIndex, InformationLinkType type) {
+		if (type == InformationLinkType.SUPPORT || type == InformationLinkType.STRONG_SUPPORT) {
+			arguments.add(index, partnerIndex, ArgumentationMatrix.SUPPORTS, 1);
+		}
+		if (type == InformationLinkType.ATTACK || type == InformationLinkType.STRONG_ATTACK) {
+			arguments.add(index, partnerIndex, ArgumentationMatrix.ATTACKS, 1);
+		}
+		if (type == InformationLinkType.SUPPLEMENT) {
+			arguments.add(index, partnerIndex, ArgumentationMatrix.SUPPLEMENTS, 1);
+		}
+	}
+
+	// row and column of an information in the argumentation matrix: fact and instruction entry of its partner
+	private int indexOfInfo(Information info) {
+		int partnerIndex;
+		if (info instanceof NewInformation newInfo) {
+			partnerIndex = partnerId(newInfo.getSourceConversationPartner().getName());
+		} else {
+			partnerIndex = partners.size();
+		}
+		return 2 * partnerIndex + (info.isIsInstruction() ? 1 : 0);
+	}
+
+	private int indexOfNode(CompactConversation conv, int node) {
+		int partnerIndex = conv.partnerOf[node] < 0 ? partners.size() : partnerId(conv.partners[conv.partnerOf[node]]);
+		return 2 * partnerIndex + (conv.instruction[node] ? 1 : 0);
+	}
+
+	// ************* worker protocol *****************
+
+	// all counts as the fields of one CSV record (see AnalysisWorker): the partners, the counts per partner id,
+	// repetitions and the cells of the argumentation matrix with their three counts
+	List<Object> fields() {
+		List<Object> res = new ArrayList<>();
+		res.add(partners.size());
+		res.addAll(partners);
+		for (int p = 0; p < partners.size(); p++) {
+			res.add(sends[p]);
+			res.add(receives[p]);
+			res.add(interrupted[p]);
+		}
+		for (int p = 0; p <= partners.size(); p++) {
+			res.add(facts[p]);
+			res.add(instructions[p]);
+		}
+		res.add(repetitions);
+		long[] cells = arguments.cells();
+		res.add(cells.length);
+		for (long cell : cells) {
+			res.add(cell);
+			res.add(arguments.get(cell, ArgumentationMatrix.ATTACKS));
+			res.add(arguments.get(cell, ArgumentationMatrix.SUPPORTS));
+			res.add(arguments.get(cell, ArgumentationMatrix.SUPPLEMENTS));
+		}
+		return res;
+	}
+
+	// the statistics written by fields
+	static ConversationStatistics parse(Iterator<String> fields) {
+		int p = Integer.parseInt(fields.next());
+		List<String> partners = new ArrayList<>(p);
+		for (int i = 0; i < p; i++) {
+			partners.add(fields.next());
+		}
+		ConversationStatistics res = new ConversationStatistics(partners);
+		for (int i = 0; i < p; i++) {
+			res.sends[i] = Integer.parseInt(fields.next());
+			res.receives[i] = Integer.parseInt(fields.next());
+			res.interrupted[i] = Integer.parseInt(fields.next());
+		}
+		for (int i = 0; i <= p; i++) {
+			res.facts[i] = Long.parseLong(fields.next());
+			res.instructions[i] = Long.parseLong(fields.next());
+		}
+		res.repetitions = Integer.parseInt(fields.next());
+		int cells = Integer.parseInt(fields.next());
+		for (int c = 0; c < cells; c++) {
+			long cell = Long.parseLong(fields.next());
+			int row = (int) (cell / res.dimension);
+			int column = (int) (cell % res.dimension);
+			res.arguments.add(row, column, ArgumentationMatrix.ATTACKS, Integer.parseInt(fields.next()));
+			res.arguments.add(row, column, ArgumentationMatrix.SUPPORTS, Integer.parseInt(fields.next()));
+			res.arguments.add(row, column, ArgumentationMatrix.SUPPLEMENTS, Integer.parseInt(fields.next()));
+		}
+		return res;
+	}
+
+}
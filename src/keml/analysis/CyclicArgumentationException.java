@@ -0,0 +1,67 @@
+package keml.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import keml.Information;
+import keml.InformationLink;
+
+// thrown when trust cannot be propagated because the argumentation graph contains cycles
+public class CyclicArgumentationException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 1L;
+
+	// each component is a strongly connected set of information (a cycle or several intertwined cycles)
+	// the model is not serializable, a deserialized exception has no components
+	private final transient List<List<Information>> components;
+
+	public CyclicArgumentationException(List<List<Information>> components) {
+		super(describe(components));
+		this.components = components;
+	}
+
+	// for graphs without model (see ArgumentationGraph.compile(CompactConversation)): component sizes and the links
+	// inside each component as "source -> target" messages, getComponents() is empty then
+	CyclicArgumentationException(int[] sizes, List<List<String>> links) {
+		super(describe(sizes, links));
+		this.components = List.of();
+	}
+
+	public List<List<Information>> getComponents() {
+		return components != null ? components : List.of();
+	}
+
+	private static String describe(List<List<Information>> components) {
+		int[] sizes = components.stream().mapToInt(List::size).toArray();
+		List<List<String>> links = new ArrayList<>();
+		for (List<Information> component : components) {
+			HashSet<Information> members = new HashSet<>(component);
+			List<String> inside = new ArrayList<>();
+			for (Information info : component) {
+				for (InformationLink l : info.getTargetedBy()) {
+					if (members.contains(l.getSource())) {
+						inside.add(l.getSource().getMessage() + " -> " + info.getMessage());
+					}
+				}
+			}
+			links.add(inside);
+		}
+		return describe(sizes, links);
+	}
+
+	private static String describe(int[] sizes, List<List<String>> links) {
+		int nodes = Arrays.stream(sizes).sum();
+		StringBuilder b = new StringBuilder("Endless loop of " + nodes + " nodes in " + sizes.length
+				+ " strongly connected components - please check the argumentation graph");
+		for (int c = 0; c < sizes.length; c++) {
+			b.append("\nComponent ").append(c + 1).append(" (").append(sizes[c]).append(" nodes):");
+			for (String link : links.get(c)) {
+				b.append("\n\t").append(link);
+			}
+		}
+		return b.toString();
+	}
+
+}
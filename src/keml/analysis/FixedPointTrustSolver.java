@@ -0,0 +1,177 @@
+package keml.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+// final trust for argumentation graphs with cycles (mutual attacks or supports), which have no order in which every
+// node comes after its sources
+// the graph is split into strongly connected components in topological order: a node outside of any cycle is
+// evaluated once like in ArgumentationGraph.evaluate, the nodes of a cycle are swept again and again in node order
+// (Gauss-Seidel) until no trust changed by more than the tolerance or the iteration cap is reached
+// with damping d a sweep keeps d of the old value, T = (1 - d) * limitTo1(...) + d * T, which calms attack cycles that
+// would otherwise flip between two values; all values stay in [-1, 1]
+// on an acyclic graph the result is the same as that of ArgumentationGraph.evaluate
+public class FixedPointTrustSolver {
+
+	static final double DEFAULT_TOLERANCE = 1e-6;
+	static final int DEFAULT_ITERATIONS = 1000;
+
+	// iterations and residual (largest change in the last sweep) of every cycle in one evaluation, by cycle index
+	public record Convergence(int[] iterations, double[] residuals, double tolerance) {
+
+		public boolean converged(int cycle) {
+			return residuals[cycle] <= tolerance;
+		}
+
+		public boolean converged() {
+			for (int c = 0; c < residuals.length; c++) {
+				if (!converged(c))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private final ArgumentationGraph graph;
+	private final double tolerance;
+	private final int maxIterations;
+	private final float damping;
+	// components in topological order, the nodes of cycles sorted by id
+	private final int[][] components;
+	private final boolean[] isCycle;
+	private final List<int[]> cycles = new ArrayList<>();
+
+	public FixedPointTrustSolver(ArgumentationGraph graph) {
+		this(graph, DEFAULT_TOLERANCE, DEFAULT_ITERATIONS, 0.0f);
+	}
+
+	public FixedPointTrustSolver(ArgumentationGraph graph, double tolerance, int maxIterations, float damping) {
+		if (!(tolerance >= 0))
+			throw new IllegalArgumentException("Tolerance must not be negative but is " + tolerance);
+		if (maxIterations < 1)
+			throw new IllegalArgumentException("At least one iteration is needed");
+		if (!(damping >= 0 && damping < 1))
+			throw new IllegalArgumentException("Damping must be in [0, 1) but is " + damping);
+		this.graph = graph;
+		this.tolerance = tolerance;
+		this.maxIterations = maxIterations;
+		this.damping = damping;
+		components = graph.components().toArray(int[][]::new);
+		isCycle = new boolean[components.length];
+		for (int k = 0; k < components.length; k++) {
+			if (graph.isCycle(components[k])) {
+				isCycle[k] = true;
+				Arrays.sort(components[k]);
+				cycles.add(components[k]);
+			}
+		}
+	}
+
+	// node ids of each cycle in topological order of the cycles, the index is the one of Convergence
+	public List<int[]> getCycles() {
+		return cycles.stream().map(int[]::clone).toList();
+	}
+
+	// writes the final trust of node i into trust[i]
+	public Convergence solve(float[] initialTrust, int weight, float[] trust) {
+		int[] iterations = new int[cycles.size()];
+		double[] residuals = new double[cycles.size()];
+		int c = 0;
+		for (int k = 0; k < components.length; k++) {
+			int[] component = components[k];
+			if (!isCycle[k]) {
+				int node = component[0];
+				trust[node] = graph.nodeTrust(node, initialTrust[node], weight, trust);
+				continue;
+			}
+			// start from the trust without arguments
+			for (int node : component) {
+				trust[node] = TrustEvaluator.limitTo1(initialTrust[node] + graph.repetitionScore(node));
+			}
+			double residual = Double.POSITIVE_INFINITY;
+			int iteration = 0;
+			while (iteration < maxIterations && residual > tolerance) {
+				residual = 0.0;
+				for (int node : component) {
+					float old = trust[node];
+					float value = graph.nodeTrust(node, initialTrust[node], weight, trust);
+					if (damping > 0)
+						value = (1 - damping) * value + damping * old;
+					trust[node] = value;
+					residual = Math.max(residual, Math.abs(value - old));
+				}
+				iteration++;
+			}
+			iterations[c] = iteration;
+			residuals[c++] = residual;
+		}
+		return new Convergence(iterations, residuals, tolerance);
+	}
+
+	public float[] solve(float[] initialTrust, int weight) {
+		float[] trust = new float[graph.size()];
+		solve(initialTrust, weight, trust);
+		return trust;
+	}
+
+	// every weight with every initial trust configuration like ArgumentationGraph.evaluate(int[], float[][]),
+	// the convergence of each column is added to convergences in the TrustBatch column order (weight, then scenario)
+	public TrustBatch solve(int[] weights, float[][] initialTrusts, List<Convergence> convergences) {
+		int n = graph.size();
+		int columns = weights.length * initialTrusts.length;
+		float[] trust = new float[n * columns];
+		float[] column = new float[n];
+		for (int w = 0, k = 0; w < weights.length; w++) {
+			for (int s = 0; s < initialTrusts.length; s++, k++) {
+				convergences.add(solve(initialTrusts[s], weights[w], column));
+				for (int node = 0; node < n; node++) {
+					trust[node * columns + k] = column[node];
+				}
+			}
+		}
+		return new TrustBatch(n, weights.clone(), initialTrusts, trust);
+	}
+
+	// ************* output *****************
+
+	// one record per cycle, weight and configuration with the iterations and the residual reached
+	public void writeCSV(String path, List<Convergence> convergences, int[] weights, List<String> names,
+			List<InformationRow> rows) throws IOException {
+		String[] messages = new String[cycles.size()];
+		for (int c = 0; c < messages.length; c++) {
+			StringBuilder sb = new StringBuilder();
+			for (int node : cycles.get(c)) {
+				if (sb.length() > 0)
+					sb.append(" | ");
+				sb.append(rows.get(node).message());
+			}
+			messages[c] = sb.toString();
+		}
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			csvPrinter.printRecord("Cycle", "Nodes", "Weight", "Configuration", "Iterations", "Residual", "Converged",
+					"Messages");
+			for (int w = 0, k = 0; w < weights.length; w++) {
+				for (int s = 0; s < names.size(); s++, k++) {
+					Convergence convergence = convergences.get(k);
+					for (int c = 0; c < messages.length; c++) {
+						csvPrinter.printRecord(c + 1, cycles.get(c).length, weights[w], names.get(s),
+								convergence.iterations()[c], convergence.residuals()[c], convergence.converged(c),
+								messages[c]);
+					}
+				}
+			}
+			csvPrinter.flush();
+		}
+		System.out.println("Wrote convergence of the argumentation cycles to " + path);
+	}
+
+}
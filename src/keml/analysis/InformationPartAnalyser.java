@@ -2,12 +2,9 @@ package keml.analysis;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVPrinter;
 
-import keml.Information;
-import keml.InformationLinkType;
 import keml.NewInformation;
 import keml.PreKnowledge;
 import keml.ReceiveMessage;
@@ -17,53 +14,44 @@ public class InformationPartAnalyser {
 	List<String> partners; //works as headers
 	int dimension; // for analysis of message connections
 	List<PreKnowledge> preKnowledge;
-	List<ReceiveMessage> receives;  //starting point for work on knowledge part
 	List<NewInformation> newInfos;
+	ConversationStatistics statistics; // counted on first use when created from the model lists
 
 
 	public InformationPartAnalyser(List<String> partners, List<ReceiveMessage> receives, List<PreKnowledge> preKnowledge) {
 		this.partners = partners;
 		dimension = (partners.size()+1)*2;
-		this.receives = receives;
 		this.newInfos = ConversationAnalyser.getNewInfos(receives);
 		this.preKnowledge = preKnowledge;
 	}
 	
+	public InformationPartAnalyser(ConversationStatistics statistics) {
+		this.partners = statistics.partners;
+		dimension = statistics.dimension;
+		this.statistics = statistics;
+	}
+	
 	public void writeInformationConnections(CSVPrinter csvPrinter) throws IOException {
 		//matrix holds fact and instruction entry for the author (for pre-knowledge) and each partner
-		int[][] countAttacks = new int[dimension][dimension];
-		int[][] countSupports = new int[dimension][dimension];
-		
-		Stream.concat(newInfos.stream(), preKnowledge.stream())
-			.forEach(info -> {
-				int index = getIndexOfInfo(info);
-				info.getCauses().forEach(link -> {
-					int partnerIndex = getIndexOfInfo(link.getTarget());
-					if (link.getType() == InformationLinkType.SUPPORT || link.getType() == InformationLinkType.STRONG_SUPPORT) {
-						countSupports[index][partnerIndex] +=1;
-					}
-					if (link.getType() == InformationLinkType.ATTACK || link.getType() == InformationLinkType.STRONG_ATTACK) {
-						countAttacks[index][partnerIndex] +=1;
-					}
-					// todo analyse supplements?
-				});
-			});
-		
-		String[][] text = combineMatrices(countAttacks, countSupports);
-		writeMatrix(text, csvPrinter);	
+		writeMatrix(statistics().arguments, csvPrinter);
 	}
 
-
-	// writes both matrices a, b into one having entries "a/b"
-	// assumption is that a and b are square matrices and have the same length dimensions
-	private String[][] combineMatrices(int[][] a, int[][]b) {
-		String[][] result = new String[dimension][dimension];
-		for (int i = 0; i < dimension; i++) {
-			for (int j=0; j < dimension; j++) {
-				result[i][j] = a[i][j]+"/"+b[i][j];
-			}
+	// one record per source and target entry with at least one link, in the order of the matrix rows
+	public void writeInformationLinks(CSVPrinter csvPrinter) throws IOException {
+		ArgumentationMatrix m = statistics().arguments;
+		String[] headers = headers();
+		csvPrinter.printRecord("Source", "Target", "Attacks", "Supports", "Supplements");
+		for (long cell : m.cells()) {
+			csvPrinter.printRecord(headers[(int) (cell / dimension)], headers[(int) (cell % dimension)],
+					m.get(cell, ArgumentationMatrix.ATTACKS), m.get(cell, ArgumentationMatrix.SUPPORTS),
+					m.get(cell, ArgumentationMatrix.SUPPLEMENTS));
 		}
-		return result;
+	}
+
+	private ConversationStatistics statistics() {
+		if (statistics == null)
+			statistics = ConversationStatistics.connections(partners, newInfos, preKnowledge);
+		return statistics;
 	}
 	
 	String[] headers() {
@@ -77,27 +65,27 @@ public class InformationPartAnalyser {
 		return headers;
 	}
 
-	// writes both matrices A, B into one having entries "a/b"
-	private void writeMatrix(String[][] m, CSVPrinter csvPrinter) throws IOException {
+	// writes attacks and supports as one matrix having entries "a/b", row by row from the stored cells
+	private void writeMatrix(ArgumentationMatrix m, CSVPrinter csvPrinter) throws IOException {
 		String[] headers = headers();
 		csvPrinter.print("Attacks/Supports");
-		csvPrinter.printRecord(headers);
+		csvPrinter.printRecord((Object[]) headers);
+		long[] cells = m.cells();
+		int next = 0;
 		for (int i = 0; i < dimension; i++) {
 			csvPrinter.print(headers[i]);
-			csvPrinter.printRecord(m[i]);
-		}
-	}
-	
-	private int getIndexOfInfo(Information info) {
-		int offset;
-		if (info.isIsInstruction()) offset = 1; else offset = 0;
-		int partnerIndex;
-		if (info instanceof NewInformation) {
-			partnerIndex = partners.indexOf(((NewInformation) info).getSourceConversationPartner().getName());
-		} else {
-			partnerIndex = partners.size();
+			for (int j = 0; j < dimension; j++) {
+				long key = (long) i * dimension + j;
+				if (next < cells.length && cells[next] == key) {
+					next++;
+					csvPrinter.print(m.get(key, ArgumentationMatrix.ATTACKS) + "/"
+							+ m.get(key, ArgumentationMatrix.SUPPORTS));
+				} else {
+					csvPrinter.print("0/0");
+				}
+			}
+			csvPrinter.println();
 		}
-		return 2*partnerIndex + offset;
 	}
 
 }
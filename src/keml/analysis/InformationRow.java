@@ -0,0 +1,52 @@
+package keml.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import keml.Information;
+import keml.NewInformation;
+import keml.PreKnowledge;
+
+// values of the information columns, read from the model once and reused for every sheet or record
+// partner is null for pre knowledge (the author)
+record InformationRow(int timing, String message, String partner, boolean isInstruction, int arguments,
+		int repetitions, float fTi, float fTa) {
+
+	InformationRow(Information info, int timing, String partner) {
+		this(timing, info.getMessage(), partner, info.isIsInstruction(), info.getTargetedBy().size(),
+				info.getRepeatedBy().size(), orNaN(info.getFeltTrustImmediately()),
+				orNaN(info.getFeltTrustAfterwards()));
+	}
+
+	boolean isLLM() {
+		return "LLM".equals(partner);
+	}
+
+	private static float orNaN(Float f) {
+		return f != null ? f.floatValue() : Float.NaN;
+	}
+
+	// rows in node order: pre knowledge first, then new information in receive order
+	static List<InformationRow> of(List<NewInformation> newInfos, List<PreKnowledge> preKnowledge) {
+		List<InformationRow> res = new ArrayList<>(preKnowledge.size() + newInfos.size());
+		for (PreKnowledge pre : preKnowledge) {
+			res.add(new InformationRow(pre, -1, null));
+		}
+		for (NewInformation info : newInfos) {
+			res.add(new InformationRow(info, info.getTiming(), info.getSourceConversationPartner().getName()));
+		}
+		return res;
+	}
+
+	static List<InformationRow> of(CompactConversation conv) {
+		int[] arguments = conv.argumentCounts();
+		List<InformationRow> res = new ArrayList<>(conv.size());
+		for (int i = 0; i < conv.size(); i++) {
+			String partner = conv.partnerOf[i] >= 0 ? conv.partners[conv.partnerOf[i]] : null;
+			res.add(new InformationRow(conv.timing[i], conv.messages[i], partner, conv.instruction[i], arguments[i],
+					conv.repetitions[i], conv.feltTrustImmediately[i], conv.feltTrustAfterwards[i]));
+		}
+		return res;
+	}
+
+}
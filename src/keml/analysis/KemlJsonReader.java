@@ -0,0 +1,529 @@
+package keml.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import keml.InformationLinkType;
+
+// reads a KEML JSON file in one pass straight into a CompactConversation, without building the EMF model
+// expects the EMF JSON layout written by keml.io: containments are nested objects, references are objects with a
+// "$ref" fragment like //@author/@messages.3/@generates.0 and attributes with default values may be left out
+// derived opposites (targetedBy, repeatedBy, isUsedOn, ...) and all other features are skipped
+public class KemlJsonReader {
+
+	// thread safe and expensive to create, so shared by all readers
+	private static final JsonFactory factory = new JsonFactory();
+
+	private final JsonParser parser;
+
+	private String title;
+	private final List<String> partners = new ArrayList<>();
+
+	// messages in document order
+	private int messageCount = 0;
+	private int[] messagePartner = new int[16];
+	private int[] messageTiming = new int[16];
+	private boolean[] messageIsReceive = new boolean[16];
+	private boolean[] messageInterrupted = new boolean[16];
+	private int[] messageFirstNew = new int[16]; // index of its first new information
+
+	// nodes in document order, pre knowledge and new information mixed
+	private int nodeCount = 0;
+	private boolean[] nodeIsPre = new boolean[16];
+	private int[] nodeMessage = new int[16]; // message of new information
+	private String[] nodeText = new String[16];
+	private boolean[] nodeInstruction = new boolean[16];
+	private float[] nodeFTi = new float[16];
+	private float[] nodeFTa = new float[16];
+	private int preCount = 0;
+	private int newCount = 0;
+	private int[] preNode = new int[16]; // pre knowledge index -> node
+	private int[] newNode = new int[16]; // new information index -> node
+
+	// links: source node, target reference (see reference()) and type
+	private int linkCount = 0;
+	private int[] linkSource = new int[16];
+	private long[] linkTarget = new long[16];
+	private byte[] linkType = new byte[16];
+
+	// references of all repeats lists and the message of each
+	private int repeatCount = 0;
+	private long[] repeats = new long[16];
+	private int[] repeatMessage = new int[16];
+
+	private KemlJsonReader(JsonParser parser) {
+		this.parser = parser;
+	}
+
+	// whether the file is KEML JSON and not the XMI that keml.io writes to .keml files, only the first bytes are read
+	public static boolean isJson(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return isJson(in);
+		}
+	}
+
+	public static boolean isJson(byte[] content) throws IOException {
+		return isJson(new ByteArrayInputStream(content));
+	}
+
+	// JSON opens an object as first character after white space and a byte order mark, XMI starts with '<'
+	private static boolean isJson(InputStream in) throws IOException {
+		int b = in.read();
+		if (b == 0xEF && in.read() == 0xBB && in.read() == 0xBF)
+			b = in.read();
+		while (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+			b = in.read();
+		}
+		return b == '{';
+	}
+
+	public static CompactConversation read(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file); JsonParser parser = factory.createParser(in)) {
+			return read(parser);
+		}
+	}
+
+	public static CompactConversation read(Reader reader) throws IOException {
+		try (JsonParser parser = factory.createParser(reader)) {
+			return read(parser);
+		}
+	}
+
+	private static CompactConversation read(JsonParser parser) throws IOException {
+		KemlJsonReader r = new KemlJsonReader(parser);
+		r.expect(parser.nextToken(), JsonToken.START_OBJECT);
+		r.conversation();
+		return r.build();
+	}
+
+	private interface FieldReader {
+		void read(String name) throws IOException;
+	}
+
+	private interface ElementReader {
+		void read(JsonToken first) throws IOException;
+	}
+
+	// reads the fields of an object whose START_OBJECT was already consumed, unknown fields must be skipped by
+	// the field reader
+	private void fields(FieldReader fieldReader) throws IOException {
+		while (true) {
+			JsonToken t = parser.nextToken();
+			if (t == JsonToken.END_OBJECT)
+				return;
+			expect(t, JsonToken.FIELD_NAME);
+			fieldReader.read(parser.currentName());
+		}
+	}
+
+	private void elements(ElementReader elementReader) throws IOException {
+		JsonToken t = parser.nextToken();
+		if (t == JsonToken.VALUE_NULL)
+			return;
+		expect(t, JsonToken.START_ARRAY);
+		while ((t = parser.nextToken()) != JsonToken.END_ARRAY) {
+			elementReader.read(t);
+		}
+	}
+
+	private void skip() throws IOException {
+		parser.nextToken();
+		parser.skipChildren();
+	}
+
+	private void conversation() throws IOException {
+		fields(name -> {
+			switch (name) {
+			case "title" -> title = string();
+			case "author" -> {
+				expect(parser.nextToken(), JsonToken.START_OBJECT);
+				author();
+			}
+			case "conversationPartners" -> elements(first -> {
+				expect(first, JsonToken.START_OBJECT);
+				String[] partnerName = { null };
+				fields(field -> {
+					if (field.equals("name"))
+						partnerName[0] = string();
+					else
+						skip();
+				});
+				partners.add(partnerName[0]);
+			});
+			default -> skip();
+			}
+		});
+	}
+
+	private void author() throws IOException {
+		fields(name -> {
+			switch (name) {
+			case "preknowledge" -> elements(first -> {
+				expect(first, JsonToken.START_OBJECT);
+				int node = information(true, -1);
+				preNode = grow(preNode, preCount);
+				preNode[preCount++] = node;
+			});
+			case "messages" -> elements(first -> {
+				expect(first, JsonToken.START_OBJECT);
+				message();
+			});
+			default -> skip();
+			}
+		});
+	}
+
+	private void message() throws IOException {
+		int m = messageCount++;
+		growMessages();
+		messagePartner[m] = -1;
+		messageFirstNew[m] = newCount;
+		boolean[] receive = { false };
+		fields(name -> {
+			switch (name) {
+			case "eClass" -> receive[0] |= string().endsWith("ReceiveMessage");
+			case "counterPart" -> messagePartner[m] = partnerReference(reference());
+			case "timing" -> messageTiming[m] = (int) number();
+			case "isInterrupted" -> {
+				messageInterrupted[m] = bool();
+				receive[0] = true;
+			}
+			case "generates" -> {
+				receive[0] = true;
+				elements(first -> {
+					expect(first, JsonToken.START_OBJECT);
+					int node = information(false, m);
+					newNode = grow(newNode, newCount);
+					newNode[newCount++] = node;
+				});
+			}
+			case "repeats" -> {
+				receive[0] = true;
+				elements(first -> {
+					expect(first, JsonToken.START_OBJECT);
+					repeats = grow(repeats, repeatCount);
+					repeatMessage = grow(repeatMessage, repeatCount);
+					repeatMessage[repeatCount] = m;
+					repeats[repeatCount++] = nodeReference(referenceFields());
+				});
+			}
+			default -> skip();
+			}
+		});
+		messageIsReceive[m] = receive[0];
+		if (messagePartner[m] < 0)
+			throw error("Message without counter part");
+	}
+
+	private int information(boolean isPre, int message) throws IOException {
+		int node = nodeCount++;
+		growNodes();
+		nodeIsPre[node] = isPre;
+		nodeMessage[node] = message;
+		nodeFTi[node] = Float.NaN;
+		nodeFTa[node] = Float.NaN;
+		fields(name -> {
+			switch (name) {
+			case "message" -> nodeText[node] = string();
+			case "isInstruction" -> nodeInstruction[node] = bool();
+			case "feltTrustImmediately" -> nodeFTi[node] = optionalNumber();
+			case "feltTrustAfterwards" -> nodeFTa[node] = optionalNumber();
+			case "causes" -> elements(first -> {
+				expect(first, JsonToken.START_OBJECT);
+				link(node);
+			});
+			default -> skip();
+			}
+		});
+		return node;
+	}
+
+	private void link(int source) throws IOException {
+		int l = linkCount++;
+		linkSource = grow(linkSource, l);
+		linkTarget = grow(linkTarget, l);
+		linkType = grow(linkType, l);
+		linkSource[l] = source;
+		linkTarget[l] = -1;
+		linkType[l] = 0; // the first literal is the EMF default
+		fields(name -> {
+			switch (name) {
+			case "type" -> linkType[l] = (byte) linkType(string()).ordinal();
+			case "target" -> linkTarget[l] = nodeReference(reference());
+			default -> skip();
+			}
+		});
+		if (linkTarget[l] < 0)
+			throw error("Link without target");
+	}
+
+	private static InformationLinkType linkType(String literal) {
+		for (InformationLinkType t : InformationLinkType.values()) {
+			if (t.toString().equals(literal) || t.name().equalsIgnoreCase(literal))
+				return t;
+		}
+		throw new IllegalArgumentException("Unknown information link type " + literal);
+	}
+
+	// ************* values *****************
+
+	private String string() throws IOException {
+		JsonToken t = parser.nextToken();
+		if (t == JsonToken.VALUE_NULL)
+			return null;
+		expect(t, JsonToken.VALUE_STRING);
+		return parser.getText();
+	}
+
+	private boolean bool() throws IOException {
+		JsonToken t = parser.nextToken();
+		if (!t.isBoolean())
+			throw error("Expected a boolean but got " + t);
+		return t == JsonToken.VALUE_TRUE;
+	}
+
+	private double number() throws IOException {
+		if (!parser.nextToken().isNumeric())
+			throw error("Expected a number but got " + parser.currentToken());
+		return parser.getDoubleValue();
+	}
+
+	private float optionalNumber() throws IOException {
+		JsonToken t = parser.nextToken();
+		if (t == JsonToken.VALUE_NULL)
+			return Float.NaN;
+		if (!t.isNumeric())
+			throw error("Expected a number but got " + t);
+		return parser.getFloatValue();
+	}
+
+	// the fragment of a reference object {"eClass": ..., "$ref": "..."}
+	private String reference() throws IOException {
+		expect(parser.nextToken(), JsonToken.START_OBJECT);
+		return referenceFields();
+	}
+
+	private String referenceFields() throws IOException {
+		String[] ref = { null };
+		fields(name -> {
+			if (name.equals("$ref"))
+				ref[0] = string();
+			else
+				skip();
+		});
+		if (ref[0] == null)
+			throw error("Reference without $ref");
+		// references into the same file may still carry the file URI
+		int hash = ref[0].indexOf('#');
+		return hash >= 0 ? ref[0].substring(hash + 1) : ref[0];
+	}
+
+	private static int partnerReference(String fragment) {
+		String[] segments = segments(fragment);
+		if (segments.length == 1 && segments[0].startsWith("@conversationPartners."))
+			return index(segments[0], fragment);
+		throw new IllegalArgumentException("Cannot resolve conversation partner " + fragment);
+	}
+
+	// information is encoded as (message + 1) << 32 | index with message -1 for pre knowledge,
+	// the node ids are only known once the whole document is read
+	private static long nodeReference(String fragment) {
+		String[] segments = segments(fragment);
+		if (segments.length == 2 && segments[0].equals("@author") && segments[1].startsWith("@preknowledge.")) {
+			return index(segments[1], fragment);
+		}
+		if (segments.length == 3 && segments[0].equals("@author") && segments[1].startsWith("@messages.")
+				&& segments[2].startsWith("@generates.")) {
+			return ((long) index(segments[1], fragment) + 1) << 32 | index(segments[2], fragment);
+		}
+		throw new IllegalArgumentException("Cannot resolve information " + fragment);
+	}
+
+	private static String[] segments(String fragment) {
+		if (!fragment.startsWith("//"))
+			throw new IllegalArgumentException("Cannot resolve reference " + fragment);
+		return fragment.substring(2).split("/");
+	}
+
+	private static int index(String segment, String fragment) {
+		try {
+			return Integer.parseInt(segment.substring(segment.lastIndexOf('.') + 1));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Cannot resolve reference " + fragment);
+		}
+	}
+
+	private void expect(JsonToken actual, JsonToken expected) throws IOException {
+		if (actual != expected)
+			throw error("Expected " + expected + " but got " + actual);
+	}
+
+	// with the location in the document
+	private JsonParseException error(String message) {
+		return new JsonParseException(parser, message);
+	}
+
+	// ************* result *****************
+
+	private CompactConversation build() {
+		int p = partners.size();
+		int[] sends = new int[p];
+		int[] receives = new int[p];
+		int[] interrupted = new int[p];
+		int[] receiveIndex = new int[messageCount];
+		int receiveCount = 0;
+		for (int m = 0; m < messageCount; m++) {
+			int partner = checkPartner(messagePartner[m]);
+			if (messageIsReceive[m]) {
+				receiveIndex[m] = receiveCount++;
+				receives[partner]++;
+				if (messageInterrupted[m])
+					interrupted[partner]++;
+			} else {
+				sends[partner]++;
+			}
+		}
+
+		// document order -> node id: pre knowledge first, new information keeps its order (which is receive order)
+		int n = nodeCount;
+		int[] id = new int[n];
+		for (int i = 0; i < preCount; i++) {
+			id[preNode[i]] = i;
+		}
+		for (int i = 0; i < newCount; i++) {
+			id[newNode[i]] = preCount + i;
+		}
+		String[] messages = new String[n];
+		int[] timing = new int[n];
+		int[] receiveOf = new int[n];
+		int[] partnerOf = new int[n];
+		boolean[] instruction = new boolean[n];
+		float[] fTi = new float[n];
+		float[] fTa = new float[n];
+		for (int node = 0; node < n; node++) {
+			int i = id[node];
+			messages[i] = nodeText[node];
+			instruction[i] = nodeInstruction[node];
+			fTi[i] = nodeFTi[node];
+			fTa[i] = nodeFTa[node];
+			if (nodeIsPre[node]) {
+				timing[i] = -1;
+				receiveOf[i] = -1;
+				partnerOf[i] = -1;
+			} else {
+				timing[i] = messageTiming[nodeMessage[node]];
+				receiveOf[i] = receiveIndex[nodeMessage[node]];
+				partnerOf[i] = messagePartner[nodeMessage[node]];
+			}
+		}
+		int[] receiveTiming = new int[receiveCount];
+		for (int m = 0; m < messageCount; m++) {
+			if (messageIsReceive[m])
+				receiveTiming[receiveIndex[m]] = messageTiming[m];
+		}
+
+		int[] repetitions = new int[n];
+		int[] repeatReceive = new int[repeatCount];
+		int[] repeatNode = new int[repeatCount];
+		for (int r = 0; r < repeatCount; r++) {
+			repeatNode[r] = resolve(repeats[r], id);
+			repeatReceive[r] = receiveIndex[repeatMessage[r]];
+			repetitions[repeatNode[r]]++;
+		}
+
+		// links grouped by target, in document order within each target
+		int[] start = new int[n + 1];
+		int[] target = new int[linkCount];
+		for (int l = 0; l < linkCount; l++) {
+			target[l] = resolve(linkTarget[l], id);
+			start[target[l] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			start[i + 1] += start[i];
+		}
+		int[] sortedSource = new int[linkCount];
+		int[] sortedTarget = new int[linkCount];
+		byte[] sortedType = new byte[linkCount];
+		for (int l = 0; l < linkCount; l++) {
+			int pos = start[target[l]]++;
+			sortedSource[pos] = id[linkSource[l]];
+			sortedTarget[pos] = target[l];
+			sortedType[pos] = linkType[l];
+		}
+
+		return new CompactConversation(title, partners.toArray(new String[0]), sends, receives, interrupted, preCount,
+				messages, timing, partnerOf, instruction, fTi, fTa, repetitions, sortedSource, sortedTarget,
+				sortedType, receiveTiming, receiveOf, repeatReceive, repeatNode);
+	}
+
+	private int checkPartner(int partner) {
+		if (partner >= partners.size())
+			throw new IllegalArgumentException("Cannot resolve conversation partner " + partner);
+		return partner;
+	}
+
+	private int resolve(long reference, int[] id) {
+		int message = (int) (reference >> 32) - 1;
+		int index = (int) reference;
+		if (message < 0) {
+			if (index >= preCount)
+				throw new IllegalArgumentException("Cannot resolve pre knowledge " + index);
+			return id[preNode[index]];
+		}
+		int first = message < messageCount ? messageFirstNew[message] : newCount;
+		int end = message + 1 < messageCount ? messageFirstNew[message + 1] : newCount;
+		if (first + index >= end)
+			throw new IllegalArgumentException("Cannot resolve new information " + index + " of message " + message);
+		return id[newNode[first + index]];
+	}
+
+	// ************* growing arrays *****************
+
+	private void growMessages() {
+		if (messageCount > messagePartner.length) {
+			int size = messagePartner.length * 2;
+			messagePartner = Arrays.copyOf(messagePartner, size);
+			messageTiming = Arrays.copyOf(messageTiming, size);
+			messageIsReceive = Arrays.copyOf(messageIsReceive, size);
+			messageInterrupted = Arrays.copyOf(messageInterrupted, size);
+			messageFirstNew = Arrays.copyOf(messageFirstNew, size);
+		}
+	}
+
+	private void growNodes() {
+		if (nodeCount > nodeIsPre.length) {
+			int size = nodeIsPre.length * 2;
+			nodeIsPre = Arrays.copyOf(nodeIsPre, size);
+			nodeMessage = Arrays.copyOf(nodeMessage, size);
+			nodeText = Arrays.copyOf(nodeText, size);
+			nodeInstruction = Arrays.copyOf(nodeInstruction, size);
+			nodeFTi = Arrays.copyOf(nodeFTi, size);
+			nodeFTa = Arrays.copyOf(nodeFTa, size);
+		}
+	}
+
+	private static int[] grow(int[] a, int used) {
+		return used < a.length ? a : Arrays.copyOf(a, a.length * 2);
+	}
+
+	private static long[] grow(long[] a, int used) {
+		return used < a.length ? a : Arrays.copyOf(a, a.length * 2);
+	}
+
+	private static byte[] grow(byte[] a, int used) {
+		return used < a.length ? a : Arrays.copyOf(a, a.length * 2);
+	}
+
+}
@@ -0,0 +1,325 @@
+package keml.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import org.javatuples.Pair;
+
+// final trust of every node as an exact function of the argument weight w, computed in one pass over the graph
+// instead of one evaluation per weight
+// T(w) = limitTo1(c + w * sum(edgeWeight * T_source(w))) with a constant c, so between the points where a node or
+// one of its sources is limited to 1.0 or -1.0 every T is a polynomial in w whose degree is at most the length of
+// the unlimited chain of links leading to the node; the limits themselves give constant pieces
+// the curves are computed in double precision, so at integer weights they match ArgumentationGraph.evaluate up to
+// its float rounding
+public class ParametricTrustSolver {
+
+	// pieces shorter than this are merged into their neighbour, they come from the same root reached on two paths
+	static final double MIN_PIECE = 1e-12;
+	// coefficients contributing less than this over a piece are dropped
+	static final double NEGLIGIBLE = 1e-15;
+	static final int BISECTIONS = 200;
+
+	private final ArgumentationGraph graph;
+
+	public ParametricTrustSolver(ArgumentationGraph graph) {
+		this.graph = graph;
+	}
+
+	// curves of all nodes for w in [from, to], indexed by node id
+	public TrustCurve[] solve(float[] initialTrust, double from, double to) {
+		if (!(from < to))
+			throw new IllegalArgumentException("Empty weight interval [" + from + ", " + to + "]");
+		int[] order = graph.order();
+		TrustCurve[] res = new TrustCurve[order.length];
+		for (int node : order) {
+			res[node] = nodeCurve(node, initialTrust[node], from, to, res);
+		}
+		return res;
+	}
+
+	private TrustCurve nodeCurve(int node, float initialTrust, double from, double to, TrustCurve[] curves) {
+		int[] sources = graph.sources(node);
+		float[] weights = graph.sourceWeights(node);
+		double c = initialTrust + graph.repetitionScore(node);
+		double[] breaks = mergedBreakpoints(sources, curves, from, to);
+		int[] piece = new int[sources.length]; // current piece of each source, they only move right
+
+		PieceList res = new PieceList(from);
+		for (int b = 0; b + 1 < breaks.length; b++) {
+			double x0 = breaks[b];
+			double x1 = breaks[b + 1];
+			double mid = (x0 + x1) / 2;
+			// argumentation score S(w) around x0
+			double[] s = new double[] { 0.0 };
+			for (int l = 0; l < sources.length; l++) {
+				TrustCurve source = curves[sources[l]];
+				double[] sb = source.getBreakpoints();
+				while (piece[l] + 1 < source.pieces() && sb[piece[l] + 1] <= mid) {
+					piece[l]++;
+				}
+				double[] shifted = shift(source.getCoefficients(piece[l]), x0 - sb[piece[l]]);
+				if (shifted.length > s.length)
+					s = Arrays.copyOf(s, shifted.length);
+				for (int k = 0; k < shifted.length; k++) {
+					s[k] += weights[l] * shifted[k];
+				}
+			}
+			// c + w * S(w) with w = x0 + t
+			double[] f = new double[s.length + 1];
+			f[0] = c;
+			for (int k = 0; k < s.length; k++) {
+				f[k] += x0 * s[k];
+				f[k + 1] += s[k];
+			}
+			limit(trim(f, x1 - x0), x0, x1, res);
+		}
+		return res.toCurve();
+	}
+
+	// splits [x0, x1] where f crosses 1.0 or -1.0 and replaces the parts outside by constants
+	private static void limit(double[] f, double x0, double x1, PieceList res) {
+		double length = x1 - x0;
+		double variation = 0.0;
+		for (int k = 1; k < f.length; k++) {
+			variation += Math.abs(f[k]) * Math.pow(length, k);
+		}
+		if (Math.abs(f[0]) + variation < 1.0) {
+			// bounded away from the limits on the whole piece
+			res.add(x1, f);
+			return;
+		}
+		double[] upper = f.clone();
+		upper[0] -= 1.0;
+		double[] lower = f.clone();
+		lower[0] += 1.0;
+		double[] cuts = merge(roots(upper, length), roots(lower, length));
+		double start = 0.0;
+		for (int i = 0; i <= cuts.length; i++) {
+			double end = i < cuts.length ? cuts[i] : length;
+			if (end - start < MIN_PIECE && i < cuts.length)
+				continue;
+			double v = TrustCurve.evaluate(f, (start + end) / 2);
+			if (v >= 1.0) {
+				res.add(x0 + end, new double[] { 1.0 });
+			} else if (v <= -1.0) {
+				res.add(x0 + end, new double[] { -1.0 });
+			} else {
+				res.add(x0 + end, trim(shift(f, start), end - start));
+			}
+			start = end;
+		}
+	}
+
+	// sorted breakpoints of all sources in [from, to], including both ends
+	private static double[] mergedBreakpoints(int[] sources, TrustCurve[] curves, double from, double to) {
+		double[] res = new double[] { from, to };
+		for (int source : sources) {
+			double[] b = curves[source].getBreakpoints();
+			if (b.length > 2)
+				res = merge(res, b);
+		}
+		return res;
+	}
+
+	// union of two ascending arrays without values closer than MIN_PIECE
+	private static double[] merge(double[] a, double[] b) {
+		double[] res = new double[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while (i < a.length || j < b.length) {
+			double v = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+			if (n == 0 || v - res[n - 1] >= MIN_PIECE)
+				res[n++] = v;
+		}
+		return Arrays.copyOf(res, n);
+	}
+
+	// coefficients in powers of (t - h) of the polynomial given in powers of t (Taylor shift by Horner's scheme)
+	static double[] shift(double[] c, double h) {
+		double[] res = c.clone();
+		if (h == 0.0)
+			return res;
+		int n = res.length - 1;
+		for (int i = 0; i < n; i++) {
+			for (int j = n - 1; j >= i; j--) {
+				res[j] += h * res[j + 1];
+			}
+		}
+		return res;
+	}
+
+	// drops leading coefficients that cannot change a value on [0, length]
+	private static double[] trim(double[] c, double length) {
+		int n = c.length;
+		double scale = NEGLIGIBLE * Math.max(1.0, Math.abs(c[0]));
+		while (n > 1 && Math.abs(c[n - 1]) * Math.pow(length, n - 1) < scale) {
+			n--;
+		}
+		return n == c.length ? c : Arrays.copyOf(c, n);
+	}
+
+	// ascending roots of the polynomial in (0, length): the roots of the derivative split [0, length] into
+	// monotone parts, each holding at most one root that bisection finds
+	static double[] roots(double[] c, double length) {
+		c = trim(c, length);
+		int degree = c.length - 1;
+		if (degree == 0)
+			return new double[0];
+		if (degree == 1) {
+			double r = -c[0] / c[1];
+			return r > 0.0 && r < length ? new double[] { r } : new double[0];
+		}
+		double[] derivative = new double[degree];
+		for (int k = 1; k <= degree; k++) {
+			derivative[k - 1] = k * c[k];
+		}
+		double[] critical = roots(derivative, length);
+		double[] res = new double[critical.length + 1];
+		int n = 0;
+		double a = 0.0;
+		double fa = TrustCurve.evaluate(c, a);
+		for (int i = 0; i <= critical.length; i++) {
+			double b = i < critical.length ? critical[i] : length;
+			double fb = TrustCurve.evaluate(c, b);
+			if (fb == 0.0 && i < critical.length) {
+				res[n++] = b;
+			} else if ((fa < 0.0 && fb > 0.0) || (fa > 0.0 && fb < 0.0)) {
+				res[n++] = bisect(c, a, b, fa);
+			}
+			a = b;
+			fa = fb;
+		}
+		return Arrays.copyOf(res, n);
+	}
+
+	private static double bisect(double[] c, double a, double b, double fa) {
+		for (int i = 0; i < BISECTIONS; i++) {
+			double m = (a + b) / 2;
+			if (m <= a || m >= b)
+				break;
+			double fm = TrustCurve.evaluate(c, m);
+			if (fm == 0.0)
+				return m;
+			if ((fm < 0.0) == (fa < 0.0)) {
+				a = m;
+				fa = fm;
+			} else {
+				b = m;
+			}
+		}
+		return (a + b) / 2;
+	}
+
+	// pieces of one curve from left to right, neighbouring constants with the same value are joined
+	private static final class PieceList {
+
+		private double[] breaks = new double[8];
+		private double[][] coefficients = new double[7][];
+		private int pieces = 0;
+
+		PieceList(double from) {
+			breaks[0] = from;
+		}
+
+		void add(double to, double[] c) {
+			if (pieces > 0 && c.length == 1 && coefficients[pieces - 1].length == 1
+					&& coefficients[pieces - 1][0] == c[0]) {
+				breaks[pieces] = to;
+				return;
+			}
+			if (pieces + 2 > breaks.length) {
+				breaks = Arrays.copyOf(breaks, breaks.length * 2);
+				coefficients = Arrays.copyOf(coefficients, breaks.length - 1);
+			}
+			coefficients[pieces++] = c;
+			breaks[pieces] = to;
+		}
+
+		TrustCurve toCurve() {
+			return new TrustCurve(Arrays.copyOf(breaks, pieces + 1), Arrays.copyOf(coefficients, pieces));
+		}
+
+	}
+
+	// ************* output *****************
+
+	// one record per piece: node, trust configuration, interval and the coefficients in powers of (w - From)
+	public static void writeCurves(String path, List<Pair<String, TrustCurve[]>> curvesPerConfiguration,
+			List<InformationRow> rows) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			csvPrinter.printRecord("Time", "Message", "Configuration", "From", "To", "Degree", "Coefficients");
+			for (int node = 0; node < rows.size(); node++) {
+				InformationRow row = rows.get(node);
+				for (Pair<String, TrustCurve[]> configuration : curvesPerConfiguration) {
+					TrustCurve curve = configuration.getValue1()[node];
+					double[] b = curve.getBreakpoints();
+					for (int p = 0; p < curve.pieces(); p++) {
+						StringBuilder coefficients = new StringBuilder();
+						for (double c : curve.getCoefficients(p)) {
+							if (coefficients.length() > 0)
+								coefficients.append(' ');
+							coefficients.append(c);
+						}
+						csvPrinter.printRecord(row.timing(), row.message(), configuration.getValue0(), b[p], b[p + 1],
+								curve.degree(p), coefficients);
+					}
+				}
+			}
+			csvPrinter.flush();
+		}
+		System.out.println("Wrote trust curves to " + path);
+	}
+
+	// the curves sampled at the given weights, one column per weight and one record per node and configuration
+	public static void writeGrid(String path, List<Pair<String, TrustCurve[]>> curvesPerConfiguration,
+			double[] grid, List<InformationRow> rows) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			csvPrinter.print("Time");
+			csvPrinter.print("Message");
+			csvPrinter.print("Configuration");
+			for (double w : grid) {
+				csvPrinter.print("w" + w);
+			}
+			csvPrinter.printRecord();
+			for (int node = 0; node < rows.size(); node++) {
+				InformationRow row = rows.get(node);
+				for (Pair<String, TrustCurve[]> configuration : curvesPerConfiguration) {
+					TrustCurve curve = configuration.getValue1()[node];
+					csvPrinter.print(row.timing());
+					csvPrinter.print(row.message());
+					csvPrinter.print(configuration.getValue0());
+					for (double w : grid) {
+						csvPrinter.print((float) curve.evaluate(w));
+					}
+					csvPrinter.printRecord();
+				}
+			}
+			csvPrinter.flush();
+		}
+		System.out.println("Wrote trust over weights to " + path);
+	}
+
+	// from, from + step, ... up to to (included if reached within rounding)
+	static double[] grid(double from, double to, double step) {
+		if (!(step > 0))
+			throw new IllegalArgumentException("Grid step must be positive but is " + step);
+		int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+		double[] res = new double[n];
+		for (int i = 0; i < n; i++) {
+			res[i] = Math.min(to, from + i * step);
+		}
+		return res;
+	}
+
+}
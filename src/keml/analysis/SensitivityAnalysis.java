@@ -0,0 +1,165 @@
+package keml.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+// Monte Carlo sensitivity of the final trust to the initial trust: samples initial trust per partner from the given
+// distributions, evaluates all samples in batches on the graph and collects the distribution of each node's trust
+public class SensitivityAnalysis {
+
+	static final int DEFAULT_BINS = 200; // histogram bins over [-1.0, 1.0], so quantiles are exact to 0.01
+	static final int MIN_BINS = 16;
+	// all histograms of a run, large conversations get fewer bins per node and weight, down to MIN_BINS
+	static final long HISTOGRAM_BYTES = 64L << 20;
+	// trust values of one batch of samples (nodes * weights * samples), bounds the memory of a run
+	static final int BATCH_VALUES = 1 << 22;
+	static final int MAX_BATCH = 256;
+	// quantiles of the CSV and workbook outputs
+	static final double[] QUANTILES = { 0.05, 0.25, 0.5, 0.75, 0.95 };
+
+	private final ArgumentationGraph graph;
+	private final TrustDistribution[] partnerDistributions; // by partner id
+	private final TrustDistribution authorDistribution;
+
+	public SensitivityAnalysis(ArgumentationGraph graph, Map<String, TrustDistribution> perPartner,
+			TrustDistribution author) {
+		this.graph = graph;
+		List<String> partners = graph.getPartnerNames();
+		partnerDistributions = new TrustDistribution[partners.size()];
+		for (int p = 0; p < partners.size(); p++) {
+			partnerDistributions[p] = perPartner.get(partners.get(p));
+			if (partnerDistributions[p] == null)
+				throw new IllegalArgumentException("No initial trust distribution given for partner " + partners.get(p));
+		}
+		this.authorDistribution = author;
+	}
+
+	// histogram bins per node and weight, so that the histograms of all values take at most HISTOGRAM_BYTES or
+	// MIN_BINS ints per value
+	static int bins(long values) {
+		return (int) Math.max(MIN_BINS, Math.min(DEFAULT_BINS, HISTOGRAM_BYTES / (Integer.BYTES * Math.max(1, values))));
+	}
+
+	// each sample has its own random stream split off the seed in sample order, so the same seed gives the same
+	// result for every batch size and pool; pool may be null for a sequential run
+	public SensitivityResult run(int[] weights, int samples, long seed, ForkJoinPool pool) {
+		if (samples < 1)
+			throw new IllegalArgumentException("At least one sample is needed");
+		int n = graph.size();
+		int w = weights.length;
+
+		float[] center = new float[partnerDistributions.length];
+		for (int p = 0; p < center.length; p++) {
+			center[p] = partnerDistributions[p].center();
+		}
+		float[] centerTrust = new float[n];
+		graph.initialTrust(center, authorDistribution.center(), centerTrust);
+		float[] baseline = new float[n * w];
+		graph.evaluate(weights, new float[][] { centerTrust }, baseline, pool);
+		SensitivityResult res = new SensitivityResult(weights.clone(), n, samples, bins((long) n * w), baseline);
+
+		// buffers are reused by all batches
+		int batch = Math.max(1, Math.min(Math.min(MAX_BATCH, samples), BATCH_VALUES / Math.max(1, n * w)));
+		float[][] initialTrusts = new float[batch][n];
+		float[] trust = new float[n * w * batch];
+		float[] perPartner = new float[partnerDistributions.length];
+		SplittableRandom root = new SplittableRandom(seed);
+
+		for (int done = 0; done < samples; done += batch) {
+			int count = Math.min(batch, samples - done);
+			if (count < batch) {
+				// the last batch is smaller
+				initialTrusts = Arrays.copyOf(initialTrusts, count);
+				trust = new float[n * w * count];
+			}
+			for (int s = 0; s < count; s++) {
+				SplittableRandom random = root.split();
+				for (int p = 0; p < perPartner.length; p++) {
+					perPartner[p] = partnerDistributions[p].sample(random);
+				}
+				graph.initialTrust(perPartner, authorDistribution.sample(random), initialTrusts[s]);
+			}
+			graph.evaluate(weights, initialTrusts, trust, pool);
+			accumulate(res, trust, w, count, pool);
+		}
+		return res;
+	}
+
+	// every node is added by exactly one task and in sample order, so the sums do not depend on the pool
+	private void accumulate(SensitivityResult res, float[] trust, int weights, int count, ForkJoinPool pool) {
+		int n = graph.size();
+		int columns = weights * count;
+		int chunk = ArgumentationGraph.LEVEL_CHUNK;
+		int chunks = (n + chunk - 1) / chunk;
+		boolean parallel = pool != null && pool.getParallelism() > 1 && chunks > 1;
+		Runnable work = () -> {
+			IntStream range = IntStream.range(0, chunks);
+			(parallel ? range.parallel() : range).forEach(c -> {
+				for (int node = c * chunk; node < Math.min(n, (c + 1) * chunk); node++) {
+					int base = node * columns;
+					for (int wi = 0; wi < weights; wi++) {
+						for (int s = 0; s < count; s++) {
+							res.add(node, wi, trust[base + wi * count + s]);
+						}
+					}
+				}
+			});
+		};
+		if (parallel) {
+			// a parallel stream started inside the pool runs its tasks there
+			pool.submit(work).join();
+		} else {
+			work.run();
+		}
+	}
+
+	public static void writeCSV(String path, SensitivityResult result, int weightIndex,
+			List<InformationRow> rows) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			csvPrinter.print("Time");
+			csvPrinter.print("Message");
+			csvPrinter.print("Baseline");
+			csvPrinter.print("Mean");
+			csvPrinter.print("Min");
+			for (double q : QUANTILES) {
+				csvPrinter.print(quantileName(q));
+			}
+			csvPrinter.print("Max");
+			csvPrinter.print("SignFlip");
+			csvPrinter.printRecord();
+			for (int node = 0; node < rows.size(); node++) {
+				InformationRow row = rows.get(node);
+				csvPrinter.print(row.timing());
+				csvPrinter.print(row.message());
+				csvPrinter.print(result.getBaseline(node, weightIndex));
+				csvPrinter.print(result.getMean(node, weightIndex));
+				csvPrinter.print(result.getMin(node, weightIndex));
+				for (double q : QUANTILES) {
+					csvPrinter.print(result.getQuantile(node, weightIndex, q));
+				}
+				csvPrinter.print(result.getMax(node, weightIndex));
+				csvPrinter.print(result.getSignFlipProbability(node, weightIndex));
+				csvPrinter.printRecord();
+			}
+			csvPrinter.flush();
+		}
+		System.out.println("Wrote sensitivity analysis to " + path);
+	}
+
+	static String quantileName(double q) {
+		return "P" + Math.round(q * 100);
+	}
+
+}
@@ -0,0 +1,102 @@
+package keml.analysis;
+
+import java.util.Arrays;
+
+// result of SensitivityAnalysis.run: distribution of the final trust of every node for every weight
+// quantiles come from a histogram over [-1.0, 1.0], interpolated within a bin and limited to the observed range
+// the number of bins is bounded by the memory of all histograms, see SensitivityAnalysis.bins
+public final class SensitivityResult {
+
+	private final int[] weights;
+	private final int samples;
+	private final int bins;
+	// node-major like TrustBatch: the values of node n and weight index w are at n*weights.length + w
+	final float[] baseline; // trust with the center of every distribution
+	final double[] sum;
+	final float[] min;
+	final float[] max;
+	final int[] signFlips; // samples with the opposite sign of the baseline
+	final int[] histogram; // bins values per node and weight
+
+	SensitivityResult(int[] weights, int nodes, int samples, int bins, float[] baseline) {
+		this.weights = weights;
+		this.samples = samples;
+		this.bins = bins;
+		this.baseline = baseline;
+		int values = nodes * weights.length;
+		sum = new double[values];
+		min = new float[values];
+		max = new float[values];
+		Arrays.fill(min, Float.POSITIVE_INFINITY);
+		Arrays.fill(max, Float.NEGATIVE_INFINITY);
+		signFlips = new int[values];
+		histogram = new int[Math.multiplyExact(values, bins)];
+	}
+
+	public int[] getWeights() {
+		return weights.clone();
+	}
+
+	public int samples() {
+		return samples;
+	}
+
+	public int size() {
+		return baseline.length / weights.length;
+	}
+
+	public float getBaseline(int node, int weightIndex) {
+		return baseline[node * weights.length + weightIndex];
+	}
+
+	public float getMean(int node, int weightIndex) {
+		return (float) (sum[node * weights.length + weightIndex] / samples);
+	}
+
+	public float getMin(int node, int weightIndex) {
+		return min[node * weights.length + weightIndex];
+	}
+
+	public float getMax(int node, int weightIndex) {
+		return max[node * weights.length + weightIndex];
+	}
+
+	// share of samples whose trust has the opposite sign of the baseline (0 if the baseline is 0)
+	public float getSignFlipProbability(int node, int weightIndex) {
+		return (float) signFlips[node * weights.length + weightIndex] / samples;
+	}
+
+	// q in [0, 1], e.g. 0.5 for the median
+	public float getQuantile(int node, int weightIndex, double q) {
+		int value = node * weights.length + weightIndex;
+		int base = value * bins;
+		double rank = q * samples;
+		int cumulative = 0;
+		for (int b = 0; b < bins; b++) {
+			int count = histogram[base + b];
+			if (count > 0 && cumulative + count >= rank) {
+				double within = (rank - cumulative) / count;
+				double res = -1.0 + (b + within) * 2.0 / bins;
+				return (float) Math.max(min[value], Math.min(max[value], res));
+			}
+			cumulative += count;
+		}
+		return max[value];
+	}
+
+	// adds the trust of one sample for node and weight index
+	void add(int node, int weightIndex, float trust) {
+		int value = node * weights.length + weightIndex;
+		sum[value] += trust;
+		if (trust < min[value])
+			min[value] = trust;
+		if (trust > max[value])
+			max[value] = trust;
+		float base = baseline[value];
+		if ((base > 0 && trust < 0) || (base < 0 && trust > 0))
+			signFlips[value]++;
+		int bin = (int) ((trust + 1.0f) * 0.5f * bins);
+		histogram[value * bins + Math.min(bins - 1, Math.max(0, bin))]++;
+	}
+
+}
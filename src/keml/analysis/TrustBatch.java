@@ -0,0 +1,54 @@
+package keml.analysis;
+
+// result of ArgumentationGraph.evaluate(int[], float[][]): final trust for every combination of weight and scenario
+public final class TrustBatch {
+
+	private final int[] weights;
+	private final float[][] initialTrust; // per scenario, indexed by node id
+	// node-major so that one node's values for all combinations are adjacent:
+	// trust of node n for weight index w and scenario s is at n*columns() + w*scenarios() + s
+	private final float[] trust;
+	private final int size; // nodes, kept apart from trust, which is empty without weights or scenarios
+
+	TrustBatch(int size, int[] weights, float[][] initialTrust, float[] trust) {
+		this.size = size;
+		this.weights = weights;
+		this.initialTrust = initialTrust;
+		this.trust = trust;
+	}
+
+	public int[] getWeights() {
+		return weights.clone();
+	}
+
+	public int scenarios() {
+		return initialTrust.length;
+	}
+
+	public int columns() {
+		return weights.length * initialTrust.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public float[] getInitialTrust(int scenario) {
+		return initialTrust[scenario];
+	}
+
+	public float getTrust(int node, int weightIndex, int scenario) {
+		return trust[node * columns() + weightIndex * scenarios() + scenario];
+	}
+
+	// copies the final trust of all nodes for one weight and scenario
+	public float[] getTrust(int weightIndex, int scenario) {
+		int columns = columns();
+		float[] res = new float[size()];
+		for (int n = 0, k = weightIndex * scenarios() + scenario; n < res.length; n++, k += columns) {
+			res[n] = trust[k];
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,94 @@
+package keml.analysis;
+
+import java.util.Arrays;
+
+// final trust of one node as a function of the argument weight w on [getFrom(), getTo()], see ParametricTrustSolver
+// piecewise polynomial: piece p covers [breakpoint p, breakpoint p+1] and has coefficients in powers of
+// (w - breakpoint p); pieces where the trust is limited to 1.0 or -1.0 are constants
+public final class TrustCurve {
+
+	private final double[] breakpoints; // pieces() + 1 ascending values, the first is from and the last to
+	private final double[][] coefficients; // per piece, lowest power first
+
+	TrustCurve(double[] breakpoints, double[][] coefficients) {
+		this.breakpoints = breakpoints;
+		this.coefficients = coefficients;
+	}
+
+	public double getFrom() {
+		return breakpoints[0];
+	}
+
+	public double getTo() {
+		return breakpoints[breakpoints.length - 1];
+	}
+
+	public int pieces() {
+		return coefficients.length;
+	}
+
+	// the inner breakpoints are the weights where the formula changes
+	// not copied for the solver, callers must not modify it
+	double[] getBreakpoints() {
+		return breakpoints;
+	}
+
+	// not copied, like getBreakpoints
+	double[] getCoefficients(int piece) {
+		return coefficients[piece];
+	}
+
+	public int degree(int piece) {
+		return coefficients[piece].length - 1;
+	}
+
+	// w must lie in [getFrom(), getTo()]
+	public double evaluate(double w) {
+		if (w < getFrom() || w > getTo())
+			throw new IllegalArgumentException("Weight " + w + " is outside of [" + getFrom() + ", " + getTo() + "]");
+		int piece = piece(w);
+		return evaluate(coefficients[piece], w - breakpoints[piece]);
+	}
+
+	// index of the piece containing w, the left one on a breakpoint
+	int piece(double w) {
+		int i = Arrays.binarySearch(breakpoints, w);
+		int piece = i >= 0 ? i - 1 : -i - 2;
+		return Math.max(0, Math.min(coefficients.length - 1, piece));
+	}
+
+	// Horner's scheme
+	static double evaluate(double[] coefficients, double t) {
+		double res = 0.0;
+		for (int k = coefficients.length - 1; k >= 0; k--) {
+			res = res * t + coefficients[k];
+		}
+		return res;
+	}
+
+	// the piece formulas, e.g. "[2.0, 3.5] 0.25 + 0.5*(w-2.0); [3.5, 10.0] 1.0"
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int p = 0; p < coefficients.length; p++) {
+			if (p > 0)
+				sb.append("; ");
+			sb.append('[').append(breakpoints[p]).append(", ").append(breakpoints[p + 1]).append("] ");
+			sb.append(formula(p));
+		}
+		return sb.toString();
+	}
+
+	String formula(int piece) {
+		double[] c = coefficients[piece];
+		StringBuilder sb = new StringBuilder().append(c[0]);
+		String var = breakpoints[piece] == 0.0 ? "w" : "(w-" + breakpoints[piece] + ")";
+		for (int k = 1; k < c.length; k++) {
+			sb.append(c[k] < 0 ? " - " : " + ").append(Math.abs(c[k])).append('*').append(var);
+			if (k > 1)
+				sb.append('^').append(k);
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,101 @@
+package keml.analysis;
+
+import java.util.SplittableRandom;
+
+// distribution of the initial trust into one conversation partner for SensitivityAnalysis, samples are limited to
+// [-1.0, 1.0] like all trust values
+public final class TrustDistribution {
+
+	public enum Kind {
+		FIXED, UNIFORM, NORMAL;
+	}
+
+	private final Kind kind;
+	private final float a; // value, minimum or mean
+	private final float b; // maximum or standard deviation, unused for FIXED
+
+	private TrustDistribution(Kind kind, float a, float b) {
+		this.kind = kind;
+		this.a = a;
+		this.b = b;
+	}
+
+	public static TrustDistribution fixed(float value) {
+		return new TrustDistribution(Kind.FIXED, value, 0);
+	}
+
+	public static TrustDistribution uniform(float min, float max) {
+		if (min > max)
+			throw new IllegalArgumentException("Minimum " + min + " is larger than maximum " + max);
+		return new TrustDistribution(Kind.UNIFORM, min, max);
+	}
+
+	public static TrustDistribution normal(float mean, float standardDeviation) {
+		if (standardDeviation < 0)
+			throw new IllegalArgumentException("Negative standard deviation " + standardDeviation);
+		return new TrustDistribution(Kind.NORMAL, mean, standardDeviation);
+	}
+
+	// fixed:<value>, uniform:<min>:<max> or normal:<mean>:<sd>, the same format as toString()
+	public static TrustDistribution parse(String spec) {
+		String[] parts = spec.split(":");
+		try {
+			switch (parts[0]) {
+			case "fixed":
+				if (parts.length == 2)
+					return fixed(Float.parseFloat(parts[1]));
+				break;
+			case "uniform":
+				if (parts.length == 3)
+					return uniform(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]));
+				break;
+			case "normal":
+				if (parts.length == 3)
+					return normal(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]));
+				break;
+			default:
+				break;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException(
+				"Expected fixed:<value>, uniform:<min>:<max> or normal:<mean>:<sd> but got " + spec);
+	}
+
+	public float sample(SplittableRandom random) {
+		float v;
+		switch (kind) {
+		case UNIFORM:
+			v = a == b ? a : (float) random.nextDouble(a, b);
+			break;
+		case NORMAL:
+			v = (float) random.nextGaussian(a, b);
+			break;
+		case FIXED:
+		default:
+			v = a;
+			break;
+		}
+		return TrustEvaluator.limitTo1(v);
+	}
+
+	// the value used for the baseline evaluation
+	public float center() {
+		return TrustEvaluator.limitTo1(kind == Kind.UNIFORM ? (a + b) / 2 : a);
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case UNIFORM:
+			return "uniform:" + a + ":" + b;
+		case NORMAL:
+			return "normal:" + a + ":" + b;
+		case FIXED:
+		default:
+			return "fixed:" + a;
+		}
+	}
+
+}
@@ -3,12 +3,10 @@ package keml.analysis;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.eclipse.emf.common.util.EList;
 import org.javatuples.Pair;
@@ -17,11 +15,13 @@ import keml.Conversation;
 import keml.ConversationPartner;
 import keml.Information;
 import keml.InformationLink;
+import keml.InformationLinkType;
 import keml.NewInformation;
 import keml.PreKnowledge;
 import keml.ReceiveMessage;
 
 // takes a conversation and prepares it for trust analysis, each analysis modifies initial and current trust scores
+// (the workbook writers evaluate on the compiled ArgumentationGraph and leave the model untouched)
 public class TrustEvaluator {
 	// +1 is absolute trust, -1 is absolute distrust, 0 is ignore - no knowledge about that node
 
@@ -33,6 +33,8 @@ public class TrustEvaluator {
 	
 	int weight;
 	
+	static final int MAX_SHEET_COLUMNS = 16384; // of an xlsx sheet
+	
 	
 	public TrustEvaluator(Conversation conv, int weight) {
 		this.conv = conv;
@@ -45,6 +47,10 @@ public class TrustEvaluator {
 	}
 	
 	public static List<Pair<String,Map<String, Float>>> standardTrustConfigurations(EList<ConversationPartner> convoPartners) {
+		return standardTrustConfigurations(convoPartners.stream().map(ConversationPartner::getName).toList());
+	}
+	
+	public static List<Pair<String,Map<String, Float>>> standardTrustConfigurations(List<String> partnerNames) {
 		ArrayList<Pair<String,Map<String, Float>>> res = new ArrayList<>();
 
 		Map<String, Float> valuesPerPartner10 = new HashMap<String, Float>(); // LLM && other 1.0
@@ -52,16 +58,16 @@ public class TrustEvaluator {
 		Map<String, Float> valuesPerPartner1005 = new HashMap<String, Float>(); // LLM 1.0 | other 0.5
 		Map<String, Float> valuesPerPartner05 = new HashMap<String, Float>(); // LLM && other 0.5
 
-		for (ConversationPartner cp : convoPartners) {
-			valuesPerPartner10.put(cp.getName(), 1.0F);
-			valuesPerPartner05.put(cp.getName(), 0.5F);
+		for (String name : partnerNames) {
+			valuesPerPartner10.put(name, 1.0F);
+			valuesPerPartner05.put(name, 0.5F);
 
-			if (cp.getName().equals("LLM")) {
+			if (name.equals("LLM")) {
 				valuesPerPartner0510.put("LLM", 0.5F);
 				valuesPerPartner1005.put("LLM", 1.0F);
 			} else {
-				valuesPerPartner0510.put(cp.getName(), 1.0F);
-				valuesPerPartner1005.put(cp.getName(), 0.5F);
+				valuesPerPartner0510.put(name, 1.0F);
+				valuesPerPartner1005.put(name, 0.5F);
 			}
 		}
 
@@ -73,24 +79,212 @@ public class TrustEvaluator {
 		return res;
 	}
 	
+	// the weights the analysis runs for: 2 ... 10
+	public static int[] standardWeights() {
+		return IntStream.rangeClosed(2, 10).toArray();
+	}
+	
+	// writes one workbook per weight to basePath-w<weight>- like writeRowAnalysis, but evaluates all weights and
+	// configurations together in a single pass over the argumentation graph
+	public static void writeRowAnalyses(Conversation conv, String basePath, int[] weights,
+			List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue) throws IOException {
+		writeRowAnalyses(conv, basePath, weights, trustInPartners, authorValue, new AnalysisOptions());
+	}
+	
+	// options.streaming writes row by row with bounded memory (see WorkbookController(boolean)),
+	// options.singleWorkbook writes one workbook basePath-all- with a sheet per weight instead of one workbook per weight,
+	// options.records writes basePath-trust.jsonl or .csv with all weights instead of any workbook
+	public static void writeRowAnalyses(Conversation conv, String basePath, int[] weights,
+			List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue, AnalysisOptions options) throws IOException {
+		writeRowAnalyses(conv, basePath, weights, trustInPartners, authorValue, options, new AnalysisMetrics(basePath));
+	}
+	
+	// phases and graph size go to metrics
+	@SuppressWarnings("try")
+	public static void writeRowAnalyses(Conversation conv, String basePath, int[] weights,
+			List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue, AnalysisOptions options,
+			AnalysisMetrics metrics) throws IOException {
+		
+		ArgumentationGraph graph;
+		List<InformationRow> rows;
+		try (var phase = metrics.phase("graph")) {
+			List<NewInformation> newInfos = ConversationAnalyser.getNewInfos(ConversationAnalyser.getReceives(conv));
+			graph = ArgumentationGraph.compile(conv);
+			rows = InformationRow.of(newInfos, conv.getAuthor().getPreknowledge());
+		}
+		writeRowAnalyses(graph, rows, basePath, weights, trustInPartners, authorValue, options, metrics);
+	}
+	
+	// the same workbooks from a conversation read by KemlJsonReader
+	public static void writeRowAnalyses(CompactConversation conv, String basePath, int[] weights,
+			List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue, AnalysisOptions options) throws IOException {
+		writeRowAnalyses(conv, basePath, weights, trustInPartners, authorValue, options, new AnalysisMetrics(basePath));
+	}
+	
+	// whether the argumentation graph is acyclic, which decides the outputs written, see AnalysisProvider.trustOutputs
+	@SuppressWarnings("try")
+	public static boolean writeRowAnalyses(CompactConversation conv, String basePath, int[] weights,
+			List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue, AnalysisOptions options,
+			AnalysisMetrics metrics) throws IOException {
+		ArgumentationGraph graph;
+		List<InformationRow> rows;
+		try (var phase = metrics.phase("graph")) {
+			graph = ArgumentationGraph.compile(conv);
+			rows = InformationRow.of(conv);
+		}
+		return writeRowAnalyses(graph, rows, basePath, weights, trustInPartners, authorValue, options, metrics);
+	}
+	
+	// from an already compiled graph and its rows, e.g. cached by AnalysisServer
+	@SuppressWarnings("try")
+	static boolean writeRowAnalyses(ArgumentationGraph graph, List<InformationRow> rows,
+			String basePath, int[] weights, List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue,
+			AnalysisOptions options, AnalysisMetrics metrics) throws IOException {
+		
+		metrics.graph(graph, weights.length * trustInPartners.size());
+		float[][] initialTrusts = trustInPartners.stream()
+				.map(p -> graph.initialTrust(p.getValue1(), authorValue))
+				.toArray(float[][]::new);
+		ForkJoinPool pool = options.parallelTrust ? ForkJoinPool.commonPool() : null;
+		List<String> names = trustInPartners.stream().map(Pair::getValue0).toList();
+		TrustBatch batch;
+		try (var phase = metrics.phase("trust-evaluation")) {
+			if (graph.isAcyclic()) {
+				batch = pool != null ? graph.evaluate(weights, initialTrusts, pool) : graph.evaluate(weights, initialTrusts);
+			} else {
+				batch = solveCycles(graph, rows, basePath, weights, initialTrusts, names, options);
+			}
+		}
+		SensitivityResult sensitivity = null;
+		if (options.samples > 0 && !graph.isAcyclic()) {
+			System.out.println("Skipped the sensitivity analysis of " + basePath + ", its argumentation graph is cyclic");
+		} else if (options.samples > 0) {
+			try (var phase = metrics.phase("sensitivity")) {
+				sensitivity = new SensitivityAnalysis(graph, options.distributions(graph.getPartnerNames()),
+						options.distribution(ConversationAnalyser.auth)).run(weights, options.samples, options.seed, pool);
+				for (int w = 0; w < weights.length; w++) {
+					SensitivityAnalysis.writeCSV(basePath + "-w" + weights[w] + "-sensitivity.csv", sensitivity, w, rows);
+				}
+			}
+		}
+		
+		if (options.weightCurves != null && !graph.isAcyclic()) {
+			System.out.println("Skipped the weight curves of " + basePath + ", its argumentation graph is cyclic");
+		} else if (options.weightCurves != null) {
+			try (var phase = metrics.phase("weight-curves")) {
+				ParametricTrustSolver solver = new ParametricTrustSolver(graph);
+				List<Pair<String, TrustCurve[]>> curves = new ArrayList<>();
+				for (int s = 0; s < names.size(); s++) {
+					curves.add(new Pair<String, TrustCurve[]>(names.get(s),
+							solver.solve(initialTrusts[s], options.weightCurves[0], options.weightCurves[1])));
+				}
+				ParametricTrustSolver.writeCurves(basePath + "-weight-curves.csv", curves, rows);
+				if (options.weightGrid > 0)
+					ParametricTrustSolver.writeGrid(basePath + "-weight-grid.csv", curves, ParametricTrustSolver
+							.grid(options.weightCurves[0], options.weightCurves[1], options.weightGrid), rows);
+			}
+		}
+		
+		TrustTimeline timeline = null;
+		List<TrustTimeline.Series> timelineSeries = new ArrayList<>();
+		if (options.timeline > 0 && !graph.isAcyclic()) {
+			System.out.println("Skipped the timeline of " + basePath + ", its argumentation graph is cyclic");
+		} else if (options.timeline > 0) {
+			try (var phase = metrics.phase("timeline")) {
+				timeline = new TrustTimeline(graph);
+				for (int s = 0; s < names.size(); s++) {
+					timelineSeries.add(timeline.run(initialTrusts[s], options.timeline));
+				}
+				timeline.writeCSV(basePath + "-w" + options.timeline + "-timeline.csv", timelineSeries, names, rows);
+			}
+		}
+		
+		if (options.records != null) {
+			try (var phase = metrics.phase("trust-records")) {
+				TrustRecordWriter.write(basePath + "-trust", options.records, rows, batch, names);
+			}
+			return graph.isAcyclic();
+		}
+		
+		WorkbookController wbc = null;
+		for (int w = 0; w < weights.length; w++) {
+			try (var phase = metrics.phase("workbook-build-w" + weights[w])) {
+				if (!options.singleWorkbook) {
+					wbc = new WorkbookController(options.streaming);
+				} else if (wbc == null) {
+					wbc = new WorkbookController(options.streaming, "w" + weights[w]);
+				} else {
+					wbc.addSheet("w" + weights[w]);
+				}
+				if (options.streaming) {
+					wbc.writeRows(rows, batch, w, names, sensitivity, "MC");
+				} else {
+					if (w == 0 || !options.singleWorkbook)
+						wbc.initialize(rows);
+					for (int s = 0; s < names.size(); s++) {
+						wbc.addTrusts(batch.getInitialTrust(s), batch.getTrust(w, s), names.get(s));
+					}
+					if (sensitivity != null)
+						wbc.addSensitivity(sensitivity, w, "MC");
+				}
+				if (timeline != null && weights[w] == options.timeline) {
+					if ((long) timeline.steps() * names.size()
+							+ WorkbookController.INFORMATION_COLUMNS > MAX_SHEET_COLUMNS)
+						System.out.println("Skipped the timeline sheet of " + basePath + ", it has too many steps");
+					else
+						wbc.addTimeline(rows, timeline, timelineSeries, names);
+				}
+			}
+			if (!options.singleWorkbook) {
+				try (var phase = metrics.phase("workbook-write-w" + weights[w])) {
+					wbc.write(basePath + "-w" + weights[w] + "-");
+				}
+			}
+		}
+		if (options.singleWorkbook && wbc != null) {
+			try (var phase = metrics.phase("workbook-write")) {
+				wbc.write(basePath + "-all-");
+			}
+		}
+		return graph.isAcyclic();
+	}
+	
+	// cycles of mutual attacks or supports are iterated to a fixed point, the convergence of every cycle is written to
+	// basePath-cycles.csv
+	private static TrustBatch solveCycles(ArgumentationGraph graph, List<InformationRow> rows, String basePath,
+			int[] weights, float[][] initialTrusts, List<String> names, AnalysisOptions options) throws IOException {
+		FixedPointTrustSolver solver = new FixedPointTrustSolver(graph, options.cycleTolerance, options.cycleIterations,
+				options.cycleDamping);
+		List<FixedPointTrustSolver.Convergence> convergences = new ArrayList<>();
+		TrustBatch batch = solver.solve(weights, initialTrusts, convergences);
+		long failed = convergences.stream().filter(c -> !c.converged()).count();
+		System.out.println("Argumentation graph of " + basePath + " has " + solver.getCycles().size()
+				+ " cycles, solved by fixed-point iteration" + (failed > 0 ? " - " + failed + " of "
+						+ convergences.size() + " evaluations did not converge" : ""));
+		solver.writeCSV(basePath + "-cycles.csv", convergences, weights, names, rows);
+		return batch;
+	}
+	
 	public void writeRowAnalysis(String path, List<Pair<String,Map<String, Float>>> trustInPartners, Float authorValue) throws IOException {
 		
+		ArgumentationGraph graph = getGraph();
 		WorkbookController wbc = new WorkbookController();
 		wbc.initialize(newInfos, preKnowledge);
 		
 		trustInPartners.forEach(p -> {
-			var res = analyse(p.getValue1(), authorValue);
-			wbc.addTrusts(res, p.getValue0());
+			float[] initial = graph.initialTrust(p.getValue1(), authorValue);
+			wbc.addTrusts(initial, evaluate(graph, initial, weight), p.getValue0());
 		});
 		wbc.write(path);
 	}
 	
 	public void writeSingleAnalysis(String path, Map<String, Float> trustInPartner, Float authorValue) throws IOException {
 		
-		var res = analyse(trustInPartner, authorValue);
+		ArgumentationGraph graph = getGraph();
+		float[] initial = graph.initialTrust(trustInPartner, authorValue);
 		WorkbookController wbc = new WorkbookController();
 		wbc.initialize(newInfos, preKnowledge);
-		wbc.addTrusts(res, "Trust");
+		wbc.addTrusts(initial, evaluate(graph, initial, weight), "Trust");
 		wbc.write(path);
 	}
 	
@@ -129,37 +323,56 @@ public class TrustEvaluator {
 		});
 	}
 	
+	// visits every node exactly once in topological order: a node is evaluated as soon as all its sources are
+	// cyclic graphs are solved by FixedPointTrustSolver with its default tolerance and iteration cap
 	public void evaluate() {
-		HashSet<Information> toVisit = Stream.concat(preKnowledge.stream(), newInfos.stream()).collect(Collectors.toCollection(HashSet::new));
-		//List<Information> toVisit = Stream.concat(preKnowledge.stream(), newInfos.stream()).toList().reversed();// start with last time stamp
-		
-		while (toVisit.size()>0) {
-			int remaining = toVisit.size();
-			for (Iterator<Information> i = toVisit.iterator(); i.hasNext(); ) {
-				 Information info = i.next();
-				 if (ready(info, toVisit)) {
-					 info.setCurrentTrust(currentNodeTrust(info));
-					 i.remove();
-				 }
-			}
-			if (toVisit.size() == remaining) {
-				System.err.println(toVisit.toString());
-				for (Information i: toVisit) {
-					for(InformationLink l : i.getTargetedBy()) {
-						System.err.println(l.getSource().getMessage() + " -> "+i.getMessage());
-					}
-				}
-				throw new IllegalArgumentException("Endless loop of "+ toVisit.size() +" nodes - please check the argumentation graph");
-			}
+		ArgumentationGraph graph = getGraph();
+		if (!graph.isAcyclic()) {
+			evaluate((ForkJoinPool) null);
+			return;
+		}
+		for (int id : graph.order()) {
+			Information info = graph.getInformation(id);
+			info.setCurrentTrust(currentNodeTrust(info));
 		}
 	}
+
+	// what-if session starting from the given initial trust, see TrustSession
+	public TrustSession session(Map<String, Float> valuePerPartner, Float authorValue) {
+		return new TrustSession(conv, weight, valuePerPartner, authorValue);
+	}
 	
-	private boolean ready(Information info, HashSet<Information> toVisit) {
-		for (InformationLink informationLink : info.getTargetedBy()) {
-			if (toVisit.contains(informationLink.getSource()))
-				return false;
+	// same result as evaluate(), but the nodes of each dependency level of the graph are evaluated concurrently
+	// on the pool (see ArgumentationGraph.evaluate(float[], int, float[], ForkJoinPool)), initial trust must be assigned
+	// pool may be null for a sequential run
+	public void evaluate(ForkJoinPool pool) {
+		ArgumentationGraph graph = getGraph();
+		int n = graph.size();
+		float[] initial = new float[n];
+		for (int id = 0; id < n; id++) {
+			initial[id] = graph.getInformation(id).getInitialTrust();
+		}
+		float[] trust = new float[n];
+		if (!graph.isAcyclic()) {
+			new FixedPointTrustSolver(graph).solve(initial, weight, trust);
+		} else if (pool != null) {
+			graph.evaluate(initial, weight, trust, pool);
+		} else {
+			graph.evaluate(initial, weight, trust);
+		}
+		for (int id = 0; id < n; id++) {
+			graph.getInformation(id).setCurrentTrust(trust[id]);
 		}
-		return true;
+	}
+
+	private static float[] evaluate(ArgumentationGraph graph, float[] initial, int weight) {
+		return graph.isAcyclic() ? graph.evaluate(initial, weight) : new FixedPointTrustSolver(graph).solve(initial, weight);
+	}
+
+	// compiled snapshot of the conversation for evaluations that leave the model untouched
+	// compiled again on every call, the model may have changed since, e.g. by the links of a TrustSession
+	public ArgumentationGraph getGraph() {
+		return ArgumentationGraph.compile(conv);
 	}
 	
 	private Float currentNodeTrust(Information info) {
@@ -176,8 +389,13 @@ public class TrustEvaluator {
 	}
 	
 	private float score(InformationLink link) {
+		// TODO should we ignore nodes that have negative trust or let them work in opposite direction? Currently opposite:
+		return edgeWeight(link.getType())*link.getSource().getCurrentTrust();
+	}
+	
+	static float edgeWeight(InformationLinkType type) {
 		float edgeWeight;
-		switch(link.getType()) {
+		switch(type) {
 		case SUPPORT:
 			edgeWeight = 0.5f;
 			break;
@@ -195,15 +413,14 @@ public class TrustEvaluator {
 			edgeWeight = 0.0f;
 			break;	
 		}
-		// TODO should we ignore nodes that have negative trust or let them work in opposite direction? Currently opposite:
-		return edgeWeight*link.getSource().getCurrentTrust();
+		return edgeWeight;
 	}
 	
 	private float getRepetitionScore(Information info) {
 		return (float) info.getRepeatedBy().size()/receives.size();
 	}
 
-	private static Float limitTo1(Float f) {
+	static float limitTo1(float f) {
 		if (f<-1) return -1F;
 		if (f>1) return 1F;
 		return f;
@@ -0,0 +1,130 @@
+package keml.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+// trust results for programs instead of people: one flat record per information, weight and trust configuration,
+// written as it is produced and without Apache POI
+public class TrustRecordWriter {
+
+	public enum Format {
+		JSONL, CSV;
+
+		String extension() {
+			return name().toLowerCase();
+		}
+	}
+
+	static final String[] HEADERS = { "Time", "Message", "Partner", "Instruction", "#Arg", "#Rep", "fTi", "fTa",
+			"Scenario", "Weight", "iT", "T" };
+
+	// path without extension, returns the path written to
+	public static String write(String path, Format format, List<InformationRow> rows, TrustBatch batch,
+			List<String> names) throws IOException {
+		String file = path + "." + format.extension();
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file))) {
+			if (format == Format.JSONL) {
+				writeJsonLines(writer, rows, batch, names);
+			} else {
+				writeCSV(writer, rows, batch, names);
+			}
+		}
+		System.out.println("Wrote trust records to " + file);
+		return file;
+	}
+
+	// nodes in row order, for each node all weights and for each weight all configurations (the TrustBatch layout)
+	private static void writeJsonLines(BufferedWriter writer, List<InformationRow> rows, TrustBatch batch,
+			List<String> names) throws IOException {
+		int[] weights = batch.getWeights();
+		String[] scenarios = new String[names.size()];
+		for (int s = 0; s < scenarios.length; s++) {
+			scenarios[s] = ",\"scenario\":" + quote(names.get(s)) + ",\"weight\":";
+		}
+		StringBuilder sb = new StringBuilder(256);
+		for (int node = 0; node < rows.size(); node++) {
+			// the information part is the same in all records of a node
+			InformationRow row = rows.get(node);
+			sb.setLength(0);
+			sb.append("{\"time\":").append(row.timing())
+					.append(",\"message\":").append(quote(row.message()))
+					.append(",\"partner\":").append(quote(partner(row)))
+					.append(",\"instruction\":").append(row.isInstruction())
+					.append(",\"arguments\":").append(row.arguments())
+					.append(",\"repetitions\":").append(row.repetitions())
+					.append(",\"fTi\":").append(number(row.fTi()))
+					.append(",\"fTa\":").append(number(row.fTa()));
+			int information = sb.length();
+			for (int w = 0; w < weights.length; w++) {
+				for (int s = 0; s < scenarios.length; s++) {
+					sb.setLength(information);
+					sb.append(scenarios[s]).append(weights[w])
+							.append(",\"iT\":").append(number(batch.getInitialTrust(s)[node]))
+							.append(",\"T\":").append(number(batch.getTrust(node, w, s)))
+							.append("}\n");
+					writer.append(sb);
+				}
+			}
+		}
+	}
+
+	private static void writeCSV(BufferedWriter writer, List<InformationRow> rows, TrustBatch batch,
+			List<String> names) throws IOException {
+		int[] weights = batch.getWeights();
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			csvPrinter.printRecord((Object[]) HEADERS);
+			for (int node = 0; node < rows.size(); node++) {
+				InformationRow row = rows.get(node);
+				String fTi = Float.isNaN(row.fTi()) ? "" : Float.toString(row.fTi());
+				String fTa = Float.isNaN(row.fTa()) ? "" : Float.toString(row.fTa());
+				for (int w = 0; w < weights.length; w++) {
+					for (int s = 0; s < names.size(); s++) {
+						csvPrinter.printRecord(row.timing(), row.message(), partner(row), row.isInstruction(),
+								row.arguments(), row.repetitions(), fTi, fTa, names.get(s), weights[w],
+								batch.getInitialTrust(s)[node], batch.getTrust(node, w, s));
+					}
+				}
+			}
+			csvPrinter.flush();
+		}
+	}
+
+	private static String partner(InformationRow row) {
+		return row.partner() != null ? row.partner() : ConversationAnalyser.auth;
+	}
+
+	// JSON has no NaN, missing felt trust is null
+	private static String number(float f) {
+		return Float.isNaN(f) || Float.isInfinite(f) ? "null" : Float.toString(f);
+	}
+
+	static String quote(String s) {
+		if (s == null)
+			return "null";
+		StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"' -> sb.append("\\\"");
+			case '\\' -> sb.append("\\\\");
+			case '\n' -> sb.append("\\n");
+			case '\r' -> sb.append("\\r");
+			case '\t' -> sb.append("\\t");
+			default -> {
+				if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+}
@@ -0,0 +1,365 @@
+package keml.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javatuples.Pair;
+
+import keml.Conversation;
+import keml.Information;
+import keml.InformationLink;
+import keml.InformationLinkType;
+import keml.KemlFactory;
+
+// what-if exploration of one conversation: keeps the trust of the last evaluation and after a change of initial
+// trust or links only recomputes the nodes downstream of the change, stopping wherever a value stays the same
+// results are bit-identical to a full TrustEvaluator.analyse on the changed conversation
+public class TrustSession {
+
+	private final ArgumentationGraph graph; // node ids and partners, the links below replace its (fixed) links
+	private final int weight;
+	private final int receives;
+	private final int[] repetitions;
+
+	// incoming links per node in getTargetedBy() order, which decides the summation order
+	private final int[][] inSource;
+	private final float[][] inWeight;
+	private final InformationLink[][] inLink;
+	private final int[] inCount;
+	// outgoing links per node (targets), the getCauses() direction
+	private final int[][] outTarget;
+	private final int[] outCount;
+
+	// position of each node in a topological order, kept valid when links are added
+	private final int[] rank;
+
+	private final float[] initialTrust;
+	private final float[] trust;
+
+	// work list of the propagation: a binary heap of node ids ordered by rank
+	private final int[] heap;
+	private int heapSize = 0;
+	private final boolean[] queued;
+	private int recomputed = 0;
+
+	public TrustSession(Conversation conv, int weight, Map<String, Float> valuePerPartner, float authorValue) {
+		this.graph = ArgumentationGraph.compile(conv);
+		this.weight = weight;
+		this.receives = ConversationAnalyser.getReceives(conv).size();
+		int n = graph.size();
+
+		repetitions = new int[n];
+		inSource = new int[n][];
+		inWeight = new float[n][];
+		inLink = new InformationLink[n][];
+		inCount = new int[n];
+		outTarget = new int[n][];
+		outCount = new int[n];
+		for (int i = 0; i < n; i++) {
+			Information info = graph.getInformation(i);
+			repetitions[i] = info.getRepeatedBy().size();
+			List<InformationLink> targetedBy = info.getTargetedBy();
+			inSource[i] = new int[Math.max(2, targetedBy.size())];
+			inWeight[i] = new float[inSource[i].length];
+			inLink[i] = new InformationLink[inSource[i].length];
+			outTarget[i] = new int[Math.max(2, info.getCauses().size())];
+		}
+		for (int i = 0; i < n; i++) {
+			for (InformationLink link : graph.getInformation(i).getTargetedBy()) {
+				int source = graph.indexOf(link.getSource());
+				// like ArgumentationGraph, links from outside the conversation are left out
+				if (source >= 0)
+					insert(source, i, link);
+			}
+		}
+
+		rank = new int[n];
+		int[] order = graph.order();
+		for (int r = 0; r < n; r++) {
+			rank[order[r]] = r;
+		}
+
+		initialTrust = graph.initialTrust(valuePerPartner, authorValue);
+		trust = graph.evaluate(initialTrust, weight);
+		heap = new int[n];
+		queued = new boolean[n];
+	}
+
+	public int size() {
+		return trust.length;
+	}
+
+	public float getTrust(Information info) {
+		return trust[id(info)];
+	}
+
+	public float getInitialTrust(Information info) {
+		return initialTrust[id(info)];
+	}
+
+	// copies of the current values, indexed like the ArgumentationGraph of the conversation
+	public float[] getTrust() {
+		return trust.clone();
+	}
+
+	public float[] getInitialTrust() {
+		return initialTrust.clone();
+	}
+
+	// number of nodes that were recomputed by the last change
+	public int recomputed() {
+		return recomputed;
+	}
+
+	// initial and final trust per information like TrustEvaluator.analyse, e.g. for WorkbookController.addTrusts
+	public HashMap<Information, Pair<Float, Float>> results() {
+		HashMap<Information, Pair<Float, Float>> res = new HashMap<>();
+		for (int i = 0; i < trust.length; i++) {
+			res.put(graph.getInformation(i), new Pair<Float, Float>(initialTrust[i], trust[i]));
+		}
+		return res;
+	}
+
+	// ************* changes *****************
+
+	// sets the initial trust of all information of one conversation partner
+	public void setPartnerTrust(String partner, float value) {
+		int p = graph.getPartnerNames().indexOf(partner);
+		if (p < 0)
+			throw new IllegalArgumentException("Unknown conversation partner " + partner);
+		setInitialTrust(p, value);
+	}
+
+	// sets the initial trust of all pre knowledge
+	public void setAuthorTrust(float value) {
+		setInitialTrust(-1, value);
+	}
+
+	public void setInitialTrust(Information info, float value) {
+		int node = id(info);
+		initialTrust[node] = value;
+		recomputed = 0;
+		enqueue(node);
+		propagate();
+	}
+
+	// all nodes of a partner id, -1 is the author
+	private void setInitialTrust(int partner, float value) {
+		recomputed = 0;
+		for (int i = 0; i < initialTrust.length; i++) {
+			if (graph.partnerOf(i) == partner) {
+				initialTrust[i] = value;
+				enqueue(i);
+			}
+		}
+		propagate();
+	}
+
+	// creates the link source -> target in the model and updates the trust downstream of target
+	public InformationLink addLink(Information source, Information target, InformationLinkType type) {
+		int s = id(source);
+		int t = id(target);
+		List<Information> cycle = reorder(s, t);
+		if (cycle != null)
+			throw new CyclicArgumentationException(List.of(cycle));
+
+		InformationLink link = KemlFactory.eINSTANCE.createInformationLink();
+		link.setType(type);
+		link.setSource(source);
+		link.setTarget(target);
+		insert(s, t, link);
+
+		recomputed = 0;
+		enqueue(t);
+		propagate();
+		return link;
+	}
+
+	// removes the link from the model and updates the trust downstream of its target
+	public void removeLink(InformationLink link) {
+		int s = id(link.getSource());
+		int t = id(link.getTarget());
+		int in = 0;
+		while (in < inCount[t] && inLink[t][in] != link) {
+			in++;
+		}
+		if (in == inCount[t])
+			throw new IllegalArgumentException("Link is not part of this session");
+		System.arraycopy(inSource[t], in + 1, inSource[t], in, inCount[t] - in - 1);
+		System.arraycopy(inWeight[t], in + 1, inWeight[t], in, inCount[t] - in - 1);
+		System.arraycopy(inLink[t], in + 1, inLink[t], in, inCount[t] - in - 1);
+		inLink[t][--inCount[t]] = null;
+		int out = 0;
+		while (outTarget[s][out] != t) {
+			out++;
+		}
+		outTarget[s][out] = outTarget[s][--outCount[s]];
+
+		link.setTarget(null);
+		link.setSource(null);
+
+		recomputed = 0;
+		enqueue(t);
+		propagate();
+	}
+
+	// ************* propagation *****************
+
+	// nodes come off the heap in rank order, so every node is recomputed after all of its changed sources
+	// and at most once per change
+	private void propagate() {
+		while (heapSize > 0) {
+			int node = poll();
+			queued[node] = false;
+			recomputed++;
+			float value = nodeTrust(node);
+			if (Float.floatToIntBits(value) == Float.floatToIntBits(trust[node]))
+				continue; // nothing downstream can change because of this node
+			trust[node] = value;
+			for (int o = 0; o < outCount[node]; o++) {
+				enqueue(outTarget[node][o]);
+			}
+		}
+	}
+
+	// the same computation as ArgumentationGraph.nodeTrust on the current links
+	private float nodeTrust(int node) {
+		float argumentationScore = ArgumentationGraph.weightedInSum(inWeight[node], inSource[node], 0, inCount[node],
+				null, 0, trust);
+		float repetitionScore = (float) repetitions[node] / receives;
+		return TrustEvaluator.limitTo1(initialTrust[node] + repetitionScore + weight * argumentationScore);
+	}
+
+	private void enqueue(int node) {
+		if (queued[node])
+			return;
+		queued[node] = true;
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (rank[heap[parent]] <= rank[node])
+				break;
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = node;
+	}
+
+	private int poll() {
+		int res = heap[0];
+		int last = heap[--heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && rank[heap[child + 1]] < rank[heap[child]])
+				child++;
+			if (rank[heap[child]] >= rank[last])
+				break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return res;
+	}
+
+	// ************* structure *****************
+
+	private void insert(int source, int target, InformationLink link) {
+		if (inCount[target] == inSource[target].length) {
+			int size = inSource[target].length * 2;
+			inSource[target] = Arrays.copyOf(inSource[target], size);
+			inWeight[target] = Arrays.copyOf(inWeight[target], size);
+			inLink[target] = Arrays.copyOf(inLink[target], size);
+		}
+		inSource[target][inCount[target]] = source;
+		inWeight[target][inCount[target]] = TrustEvaluator.edgeWeight(link.getType());
+		inLink[target][inCount[target]++] = link;
+		if (outCount[source] == outTarget[source].length)
+			outTarget[source] = Arrays.copyOf(outTarget[source], outCount[source] * 2);
+		outTarget[source][outCount[source]++] = target;
+	}
+
+	// keeps rank a topological order for a new link s -> t (Pearce and Kelly): only the nodes ranked between t and s
+	// that depend on t or that s depends on are moved, returns the cycle if the link would close one
+	private List<Information> reorder(int s, int t) {
+		if (s == t)
+			return List.of(graph.getInformation(s));
+		if (rank[s] < rank[t])
+			return null;
+		// forward from t, all ranks up to rank[s]
+		int[] parent = new int[trust.length];
+		Arrays.fill(parent, -1);
+		List<Integer> forward = new ArrayList<>();
+		List<Integer> stack = new ArrayList<>(List.of(t));
+		parent[t] = t;
+		while (!stack.isEmpty()) {
+			int v = stack.remove(stack.size() - 1);
+			forward.add(v);
+			for (int o = 0; o < outCount[v]; o++) {
+				int w = outTarget[v][o];
+				if (w == s) {
+					// t -> ... -> v -> s plus the new link s -> t
+					List<Information> cycle = new ArrayList<>(List.of(graph.getInformation(s)));
+					for (int x = v; x != t; x = parent[x]) {
+						cycle.add(graph.getInformation(x));
+					}
+					cycle.add(graph.getInformation(t));
+					return cycle;
+				}
+				if (parent[w] < 0 && rank[w] < rank[s]) {
+					parent[w] = v;
+					stack.add(w);
+				}
+			}
+		}
+		// backward from s, all ranks down to rank[t]
+		boolean[] seen = new boolean[trust.length];
+		List<Integer> backward = new ArrayList<>();
+		stack.add(s);
+		seen[s] = true;
+		while (!stack.isEmpty()) {
+			int v = stack.remove(stack.size() - 1);
+			backward.add(v);
+			for (int l = 0; l < inCount[v]; l++) {
+				int u = inSource[v][l];
+				if (!seen[u] && rank[u] > rank[t]) {
+					seen[u] = true;
+					stack.add(u);
+				}
+			}
+		}
+		// the freed ranks, smallest first go to everything s depends on, then to everything depending on t
+		backward.sort((a, b) -> Integer.compare(rank[a], rank[b]));
+		forward.sort((a, b) -> Integer.compare(rank[a], rank[b]));
+		int[] ranks = new int[backward.size() + forward.size()];
+		int k = 0;
+		for (int v : backward) {
+			ranks[k++] = rank[v];
+		}
+		for (int v : forward) {
+			ranks[k++] = rank[v];
+		}
+		Arrays.sort(ranks);
+		k = 0;
+		for (int v : backward) {
+			rank[v] = ranks[k++];
+		}
+		for (int v : forward) {
+			rank[v] = ranks[k++];
+		}
+		return null;
+	}
+
+	private int id(Information info) {
+		int id = graph.indexOf(info);
+		if (id < 0)
+			throw new IllegalArgumentException("Information is not part of this session: " + info.getMessage());
+		return id;
+	}
+
+}
@@ -0,0 +1,332 @@
+package keml.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+// trust of every information as the conversation goes on: after the pre knowledge (step 0) and after each receive
+// message in timing order (step s), as if the analysis ran on the conversation up to that message
+// a step brings its new information, its repetitions and the links whose source and target both exist now, and the
+// repetition score of every repeated information shrinks because there is one more receive message; only these
+// nodes and what depends on them are recomputed, in topological order and stopping where a value stays the same
+// after the last step the trust is bit-identical to ArgumentationGraph.evaluate
+public class TrustTimeline {
+
+	private final ArgumentationGraph graph;
+	private final int[] rank; // position of each node in the topological order of the whole graph
+
+	// incoming links per node in summation order and the step from which each link exists
+	private final int[][] inSource;
+	private final float[][] inWeight;
+	private final int[][] inStep;
+	private final int[][] outTarget;
+
+	// per step in CSR layout: the new nodes, the repeated nodes and the targets of the new links
+	private final int[] newStart;
+	private final int[] newNodes;
+	private final int[] repeatStart;
+	private final int[] repeatNodes;
+	private final int[] linkStart;
+	private final int[] linkTargets;
+
+	public TrustTimeline(ArgumentationGraph graph) {
+		this.graph = graph;
+		int n = graph.size();
+		int steps = graph.steps();
+		int[] order = graph.order();
+		rank = new int[n];
+		for (int r = 0; r < n; r++) {
+			rank[order[r]] = r;
+		}
+
+		inSource = new int[n][];
+		inWeight = new float[n][];
+		inStep = new int[n][];
+		int[] outCount = new int[n];
+		int[] newCount = new int[steps];
+		int[] repeatCount = new int[steps];
+		int[] linkCount = new int[steps];
+		for (int node = 0; node < n; node++) {
+			inSource[node] = graph.sources(node);
+			inWeight[node] = graph.sourceWeights(node);
+			inStep[node] = new int[inSource[node].length];
+			for (int l = 0; l < inSource[node].length; l++) {
+				inStep[node][l] = Math.max(graph.stepOf(inSource[node][l]), graph.stepOf(node));
+				outCount[inSource[node][l]]++;
+				linkCount[inStep[node][l]]++;
+			}
+			newCount[graph.stepOf(node)]++;
+			for (int step : graph.repeatSteps(node)) {
+				repeatCount[step]++;
+			}
+		}
+		outTarget = new int[n][];
+		for (int node = 0; node < n; node++) {
+			outTarget[node] = new int[outCount[node]];
+			outCount[node] = 0;
+		}
+		newStart = starts(newCount);
+		repeatStart = starts(repeatCount);
+		linkStart = starts(linkCount);
+		newNodes = new int[n];
+		repeatNodes = new int[repeatStart[steps]];
+		linkTargets = new int[linkStart[steps]];
+		for (int node = 0; node < n; node++) {
+			for (int l = 0; l < inSource[node].length; l++) {
+				int source = inSource[node][l];
+				outTarget[source][outCount[source]++] = node;
+				int step = inStep[node][l];
+				linkTargets[linkStart[step + 1] - linkCount[step]--] = node;
+			}
+			int step = graph.stepOf(node);
+			newNodes[newStart[step + 1] - newCount[step]--] = node;
+			for (int s : graph.repeatSteps(node)) {
+				repeatNodes[repeatStart[s + 1] - repeatCount[s]--] = node;
+			}
+		}
+	}
+
+	// exclusive prefix sums with a final total
+	private static int[] starts(int[] counts) {
+		int[] res = new int[counts.length + 1];
+		for (int i = 0; i < counts.length; i++) {
+			res[i + 1] = res[i] + counts[i];
+		}
+		return res;
+	}
+
+	public int steps() {
+		return graph.steps();
+	}
+
+	// timing of the receive message of a step, -1 for the pre knowledge
+	public int stepTiming(int step) {
+		return graph.stepTiming(step);
+	}
+
+	// trust after every step for one weight and initial trust (indexed by node id)
+	public Series run(float[] initialTrust, int weight) {
+		return new Run(initialTrust, weight).run();
+	}
+
+	// what a run changed, in step order: after step s the nodes changedNode[changeStart[s]] ...
+	// changedNode[changeStart[s+1]-1] (ascending ids) have the trust in changedTrust, all others kept theirs
+	public static final class Series {
+
+		private final int[] changeStart;
+		private final int[] changedNode;
+		private final float[] changedTrust;
+		private final int recomputed;
+		private final int[] stepOf;
+
+		private Series(int[] changeStart, int[] changedNode, float[] changedTrust, int recomputed, int[] stepOf) {
+			this.changeStart = changeStart;
+			this.changedNode = changedNode;
+			this.changedTrust = changedTrust;
+			this.recomputed = recomputed;
+			this.stepOf = stepOf;
+		}
+
+		public int changes() {
+			return changedNode.length;
+		}
+
+		// node evaluations over all steps, compared to steps() * size() for re-running every prefix
+		public int recomputed() {
+			return recomputed;
+		}
+
+		// trust of all nodes after the given step, NaN for nodes not received yet
+		public float[] trustAfter(int step) {
+			float[] res = new float[stepOf.length];
+			Arrays.fill(res, Float.NaN);
+			for (int c = 0; c < changeStart[step + 1]; c++) {
+				res[changedNode[c]] = changedTrust[c];
+			}
+			return res;
+		}
+
+		// trust of one node after every step, NaN before it was received
+		public float[] trustOf(int node) {
+			float[] res = new float[changeStart.length - 1];
+			Arrays.fill(res, Float.NaN);
+			float current = Float.NaN;
+			for (int step = stepOf[node]; step < res.length; step++) {
+				int c = Arrays.binarySearch(changedNode, changeStart[step], changeStart[step + 1], node);
+				if (c >= 0)
+					current = changedTrust[c];
+				res[step] = current;
+			}
+			return res;
+		}
+	}
+
+	// state of one run, the work list is a binary heap of node ids ordered by rank like in TrustSession
+	private final class Run {
+
+		private final float[] initialTrust;
+		private final int weight;
+		private final float[] trust;
+		private final boolean[] present;
+		private final int[] repetitions;
+		private final int[] repeated; // nodes with repetitions so far
+		private int repeatedCount = 0;
+		private final int[] heap;
+		private int heapSize = 0;
+		private final boolean[] queued;
+		private final int[] changed;
+		private int changedCount = 0;
+		private int recomputed = 0;
+
+		Run(float[] initialTrust, int weight) {
+			this.initialTrust = initialTrust;
+			this.weight = weight;
+			int n = graph.size();
+			trust = new float[n];
+			present = new boolean[n];
+			repetitions = new int[n];
+			repeated = new int[n];
+			heap = new int[n];
+			queued = new boolean[n];
+			changed = new int[n];
+		}
+
+		Series run() {
+			int steps = graph.steps();
+			int[] stepOf = new int[trust.length];
+			int[] changeStart = new int[steps + 1];
+			int[] changedNode = new int[Math.max(16, trust.length)];
+			float[] changedTrust = new float[changedNode.length];
+			int changes = 0;
+			for (int step = 0; step < steps; step++) {
+				for (int i = newStart[step]; i < newStart[step + 1]; i++) {
+					int node = newNodes[i];
+					present[node] = true;
+					stepOf[node] = step;
+					enqueue(node);
+				}
+				for (int i = repeatStart[step]; i < repeatStart[step + 1]; i++) {
+					int node = repeatNodes[i];
+					if (repetitions[node]++ == 0)
+						repeated[repeatedCount++] = node;
+				}
+				for (int i = linkStart[step]; i < linkStart[step + 1]; i++) {
+					enqueue(linkTargets[i]);
+				}
+				// one more receive message changes the repetition score of everything repeated so far
+				for (int i = 0; i < repeatedCount; i++) {
+					if (present[repeated[i]])
+						enqueue(repeated[i]);
+				}
+				propagate(step);
+
+				Arrays.sort(changed, 0, changedCount);
+				if (changes + changedCount > changedNode.length) {
+					int size = Math.max(changedNode.length * 2, changes + changedCount);
+					changedNode = Arrays.copyOf(changedNode, size);
+					changedTrust = Arrays.copyOf(changedTrust, size);
+				}
+				for (int i = 0; i < changedCount; i++) {
+					changedNode[changes] = changed[i];
+					changedTrust[changes++] = trust[changed[i]];
+				}
+				changedCount = 0;
+				changeStart[step + 1] = changes;
+			}
+			return new Series(changeStart, Arrays.copyOf(changedNode, changes), Arrays.copyOf(changedTrust, changes),
+					recomputed, stepOf);
+		}
+
+		// nodes come off the heap in rank order, so every node is recomputed after all of its changed sources and at
+		// most once per step
+		private void propagate(int step) {
+			while (heapSize > 0) {
+				int node = poll();
+				queued[node] = false;
+				recomputed++;
+				float value = nodeTrust(node, step);
+				if (step > graph.stepOf(node) && Float.floatToIntBits(value) == Float.floatToIntBits(trust[node]))
+					continue; // nothing downstream can change because of this node
+				trust[node] = value;
+				changed[changedCount++] = node;
+				for (int target : outTarget[node]) {
+					if (present[target])
+						enqueue(target);
+				}
+			}
+		}
+
+		// ArgumentationGraph.nodeTrust on the links that exist at the step, with one receive message per step
+		private float nodeTrust(int node, int step) {
+			float argumentationScore = ArgumentationGraph.weightedInSum(inWeight[node], inSource[node], 0,
+					inSource[node].length, inStep[node], step, trust);
+			// nothing can be repeated before the first receive message
+			float repetitionScore = step > 0 ? (float) repetitions[node] / step : 0.0f;
+			return TrustEvaluator.limitTo1(initialTrust[node] + repetitionScore + weight * argumentationScore);
+		}
+
+		private void enqueue(int node) {
+			if (queued[node])
+				return;
+			queued[node] = true;
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (rank[heap[parent]] <= rank[node])
+					break;
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = node;
+		}
+
+		private int poll() {
+			int res = heap[0];
+			int last = heap[--heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize)
+					break;
+				if (child + 1 < heapSize && rank[heap[child + 1]] < rank[heap[child]])
+					child++;
+				if (rank[heap[child]] >= rank[last])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return res;
+		}
+	}
+
+	// ************* output *****************
+
+	// one record per step, configuration and information whose trust changed in that step (including its arrival)
+	public void writeCSV(String path, List<Series> series, List<String> names, List<InformationRow> rows)
+			throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(Paths.get(path));
+		try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+			csvPrinter.printRecord("Step", "Step Time", "Time", "Message", "Configuration", "T");
+			for (int step = 0; step < steps(); step++) {
+				for (int s = 0; s < names.size(); s++) {
+					Series run = series.get(s);
+					for (int c = run.changeStart[step]; c < run.changeStart[step + 1]; c++) {
+						InformationRow row = rows.get(run.changedNode[c]);
+						csvPrinter.printRecord(step, stepTiming(step), row.timing(), row.message(), names.get(s),
+								run.changedTrust[c]);
+					}
+				}
+			}
+			csvPrinter.flush();
+		}
+		System.out.println("Wrote trust over the conversation to " + path);
+	}
+
+}
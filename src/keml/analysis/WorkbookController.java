@@ -15,8 +15,10 @@ import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.RegionUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -28,8 +30,18 @@ import keml.PreKnowledge;
 
 public class WorkbookController {
 
-	XSSFWorkbook wb;
+	// rows kept in memory in streaming mode, all older rows are flushed to disk
+	static final int STREAMING_WINDOW = 100;
+	// column width limit (in characters) when widths are estimated instead of auto sized
+	static final int MAX_ESTIMATED_WIDTH = 80;
+	// columns of each sheet before the trust columns: Time, Message, #Arg, #Rep, fTi and fTa
+	static final int INFORMATION_COLUMNS = 6;
+	// headers of the columns added by addSensitivity
+	static final String[] SENSITIVITY_COLUMNS = { "mean", "P5", "P50", "P95", "flip" };
+
+	Workbook wb;
 	Sheet sheet;
+	boolean streaming;
 
 	XSSFCellStyle defaultStyle;
 	XSSFCellStyle headerStyle;
@@ -43,81 +55,57 @@ public class WorkbookController {
 	XSSFCellStyle factStyle;
 	XSSFCellStyle origLLMStyle;
 	XSSFCellStyle origOtherStyle;
+	// streaming mode cannot revisit rows for RegionUtil borders, so the first column of each scenario has own styles
+	XSSFCellStyle bigHeaderLeftStyle;
+	XSSFCellStyle headerMessageLeftStyle;
+	XSSFCellStyle trustLeftStyle;
+	XSSFCellStyle distrustLeftStyle;
+	XSSFCellStyle neutTrustLeftStyle;
 
 	// data properties
 	int firstFreeColumn = 0;
 	private HashMap<Information, Integer> infoToRow;
+	private List<InformationRow> rows; // same for all sheets
+	private int[] estimatedWidths; // characters per column, only tracked in streaming mode
 
 	public WorkbookController() {
+		this(false);
+	}
+
+	// streaming: rows are written once and in order (see writeRows) and only a fixed window of them is kept in memory
+	public WorkbookController(boolean streaming) {
+		this(streaming, "Trust");
+	}
+
+	public WorkbookController(boolean streaming, String sheetName) {
 
+		this.streaming = streaming;
 		infoToRow = new HashMap<>();
 
-		wb = new XSSFWorkbook();
-		sheet = wb.createSheet("Trust");
-		// we need two rows we might merge:
-		Row headers = sheet.createRow(0);
-		Row headers1 = sheet.createRow(1);
+		wb = streaming ? new SXSSFWorkbook(new XSSFWorkbook(), STREAMING_WINDOW) : new XSSFWorkbook();
 
-		Cell start = headers.createCell(0);
-		defaultStyle = (XSSFCellStyle) start.getCellStyle();
+		defaultStyle = (XSSFCellStyle) wb.getCellStyleAt(0);
 		defaultStyle.setAlignment(HorizontalAlignment.CENTER);
 
 		// ************* headers *****************
 		Font headerFont = wb.createFont();
 		headerFont.setBold(true);
-		headerStyle = wb.createCellStyle();
+		headerStyle = (XSSFCellStyle) wb.createCellStyle();
 		headerStyle.setRotation((short) 90);
 		headerStyle.setAlignment(HorizontalAlignment.CENTER);
 		// headerStyle.setFont(headerFont);
 
-		headerMessageStyle = wb.createCellStyle();
+		headerMessageStyle = (XSSFCellStyle) wb.createCellStyle();
 		headerMessageStyle.setAlignment(HorizontalAlignment.LEFT);
 		// headerMessageStyle.setFont(headerFont);
 
-		bigHeaderStyle = wb.createCellStyle();
+		bigHeaderStyle = (XSSFCellStyle) wb.createCellStyle();
 		bigHeaderStyle.setAlignment(HorizontalAlignment.CENTER);
 		Font bigHeaderFont = wb.createFont();
 		// bigHeaderFont.setBold(true);
 		bigHeaderFont.setFontHeight((short) 360);
 		bigHeaderStyle.setFont(bigHeaderFont);
 
-		start.setCellValue("Time");
-		start.setCellStyle(headerStyle);
-		headers1.createCell(0);
-		sheet.addMergedRegion(new CellRangeAddress(0, 1, 0, 0));
-
-		Cell i = headers.createCell(1);
-		i.setCellValue("Message");
-		i.setCellStyle(headerMessageStyle);
-		headers1.createCell(1);
-		sheet.addMergedRegion(new CellRangeAddress(0, 1, 1, 1));
-
-		i = headers.createCell(2);
-		i.setCellValue("#Arg");
-		i.setCellStyle(headerStyle);
-		headers1.createCell(2);
-		sheet.addMergedRegion(new CellRangeAddress(0, 1, 2, 2));
-
-		i = headers.createCell(3);
-		i.setCellValue("#Rep");
-		i.setCellStyle(headerStyle);
-		headers1.createCell(3);
-		sheet.addMergedRegion(new CellRangeAddress(0, 1, 3, 3));
-
-		i = headers.createCell(4);
-		i.setCellValue("fTi");
-		i.setCellStyle(headerMessageStyle);
-		headers1.createCell(4);
-		sheet.addMergedRegion(new CellRangeAddress(0, 1, 4, 4));
-
-		i = headers.createCell(5);
-		i.setCellValue("fTa");
-		i.setCellStyle(headerMessageStyle);
-		headers1.createCell(5);
-		sheet.addMergedRegion(new CellRangeAddress(0, 1, 5, 5));
-
-		firstFreeColumn = 6;
-
 		// *********** styles *******************
 
 		CellStyle floatStyle = wb.createCellStyle();
@@ -125,107 +113,253 @@ public class WorkbookController {
 
 		// additional color styles:
 		// *************** Trust ****************
-		trustStyle = wb.createCellStyle();
+		trustStyle = (XSSFCellStyle) wb.createCellStyle();
 		trustStyle.setDataFormat(floatStyle.getDataFormat());
 		trustStyle.setAlignment(HorizontalAlignment.CENTER);
 		trustStyle.setFillForegroundColor(new XSSFColor(java.awt.Color.decode("#339966"), null));
 		trustStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 		// *************** Distrust *************
-		distrustStyle = wb.createCellStyle();
+		distrustStyle = (XSSFCellStyle) wb.createCellStyle();
 		trustStyle.setDataFormat(floatStyle.getDataFormat());
 		distrustStyle.setAlignment(HorizontalAlignment.CENTER);
 		distrustStyle.setFillForegroundColor(new XSSFColor(java.awt.Color.decode("#FF5F5F"), null));
 		distrustStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 		// *************** neutral about trust *************
-		neutTrustStyle = wb.createCellStyle();
+		neutTrustStyle = (XSSFCellStyle) wb.createCellStyle();
 		trustStyle.setDataFormat(floatStyle.getDataFormat());
 		neutTrustStyle.setAlignment(HorizontalAlignment.CENTER);
 		neutTrustStyle.setFillForegroundColor(IndexedColors.LIGHT_YELLOW.getIndex());
 		neutTrustStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 		// ************** isFact *************
-		factStyle = wb.createCellStyle();
+		factStyle = (XSSFCellStyle) wb.createCellStyle();
 		factStyle.setAlignment(HorizontalAlignment.CENTER);
 		factStyle.setFillForegroundColor(new XSSFColor(java.awt.Color.decode("#99CC00"), null));
 		factStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
 		// ************* is Instruction **********
-		instructionStyle = wb.createCellStyle();
+		instructionStyle = (XSSFCellStyle) wb.createCellStyle();
 		instructionStyle.setAlignment(HorizontalAlignment.CENTER);
 		instructionStyle.setFillForegroundColor(new XSSFColor(java.awt.Color.decode("#FFCC00"), null));
 		instructionStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
 		// *************** origin LLM style**************
-		origLLMStyle = wb.createCellStyle();
+		origLLMStyle = (XSSFCellStyle) wb.createCellStyle();
 		origLLMStyle.setAlignment(HorizontalAlignment.LEFT);
 		origLLMStyle.setFillForegroundColor(new XSSFColor(java.awt.Color.decode("#CCFFFF"), null));
 		origLLMStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
 		// *************** origin Other style**************
-		origOtherStyle = wb.createCellStyle();
+		origOtherStyle = (XSSFCellStyle) wb.createCellStyle();
 		origOtherStyle.setAlignment(HorizontalAlignment.LEFT);
 		origOtherStyle.setFillForegroundColor(new XSSFColor(java.awt.Color.decode("#FFFF99"), null));
 		origOtherStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
+		createSheet(sheetName);
+	}
+
+	// adds another sheet with the same information columns and makes it the one all further calls work on
+	// (in streaming mode the rows come with writeRows, otherwise the rows of initialize are repeated)
+	public void addSheet(String name) {
+		sizeColumns();
+		createSheet(name);
+		if (!streaming && rows != null) {
+			int offset = 2;
+			for (InformationRow row : rows) {
+				createInformationRow(offset++, row);
+			}
+		}
+	}
+
+	private void createSheet(String name) {
+		sheet = wb.createSheet(name);
+		// we need two rows we might merge:
+		Row headers = sheet.createRow(0);
+		Row headers1 = sheet.createRow(1);
+
+		Cell i = headers.createCell(0);
+		i.setCellValue("Time");
+		i.setCellStyle(headerStyle);
+		headers1.createCell(0);
+		sheet.addMergedRegion(new CellRangeAddress(0, 1, 0, 0));
+
+		i = headers.createCell(1);
+		i.setCellValue("Message");
+		i.setCellStyle(headerMessageStyle);
+		headers1.createCell(1);
+		sheet.addMergedRegion(new CellRangeAddress(0, 1, 1, 1));
+
+		i = headers.createCell(2);
+		i.setCellValue("#Arg");
+		i.setCellStyle(headerStyle);
+		headers1.createCell(2);
+		sheet.addMergedRegion(new CellRangeAddress(0, 1, 2, 2));
+
+		i = headers.createCell(3);
+		i.setCellValue("#Rep");
+		i.setCellStyle(headerStyle);
+		headers1.createCell(3);
+		sheet.addMergedRegion(new CellRangeAddress(0, 1, 3, 3));
+
+		i = headers.createCell(4);
+		i.setCellValue("fTi");
+		i.setCellStyle(headerMessageStyle);
+		headers1.createCell(4);
+		sheet.addMergedRegion(new CellRangeAddress(0, 1, 4, 4));
+
+		i = headers.createCell(5);
+		i.setCellValue("fTa");
+		i.setCellStyle(headerMessageStyle);
+		headers1.createCell(5);
+		sheet.addMergedRegion(new CellRangeAddress(0, 1, 5, 5));
+
+		firstFreeColumn = INFORMATION_COLUMNS;
+
+		if (streaming) {
+			// the fixed columns, widths of trust columns are added by writeRows
+			estimatedWidths = new int[] { 4, "Message".length(), 4, 4, 4, 4 };
+		}
+	}
+
+	// left borders as set by setBorderLeft, only created for the sheets written in order (writeRows, addTimeline)
+	private void createLeftBorderStyles() {
+		if (bigHeaderLeftStyle != null)
+			return;
+		bigHeaderLeftStyle = withLeftBorder(bigHeaderStyle, IndexedColors.BLACK);
+		headerMessageLeftStyle = withLeftBorder(headerMessageStyle, IndexedColors.BLACK);
+		trustLeftStyle = withLeftBorder(trustStyle, IndexedColors.WHITE);
+		distrustLeftStyle = withLeftBorder(distrustStyle, IndexedColors.WHITE);
+		neutTrustLeftStyle = withLeftBorder(neutTrustStyle, IndexedColors.WHITE);
+	}
+
+	private XSSFCellStyle withLeftBorder(XSSFCellStyle style, IndexedColors color) {
+		XSSFCellStyle res = (XSSFCellStyle) wb.createCellStyle();
+		res.cloneStyleFrom(style);
+		res.setBorderLeft(BorderStyle.MEDIUM);
+		res.setLeftBorderColor(color.getIndex());
+		return res;
 	}
 
 	public void initialize(List<NewInformation> newInfos, List<PreKnowledge> preKnowledge) {
+		prepareRows(newInfos, preKnowledge);
+		initialize(rows);
+	}
+
+	// rows as given by InformationRow.of, in node order
+	void initialize(List<InformationRow> informationRows) {
+		checkNotStreaming();
+		rows = informationRows;
 		int offset = 2; // adapted in loop
-		for (int i = 0; i < preKnowledge.size(); i++) {
-			PreKnowledge pre = preKnowledge.get(i);
-			infoToRow.put(pre, offset);
-			Row r = sheet.createRow(offset++);
-			Cell t = r.createCell(0);
-			t.setCellValue(-1);
-			colorByIsInstruction(t, pre.isIsInstruction());
-			Cell msg = r.createCell(1);
-			msg.setCellValue(pre.getMessage());
-			colorByOrigin(msg, false);
-			r.createCell(2).setCellValue(pre.getTargetedBy().size());
-			r.createCell(3).setCellValue(pre.getRepeatedBy().size());
-			Float fTi = pre.getFeltTrustImmediately();
-			Float fTa = pre.getFeltTrustAfterwards();
-			float fTiCellValue = fTi != null ? fTi.floatValue() : Float.NaN;
-			float fTaCellValue = fTa != null ? fTa.floatValue() : Float.NaN;
-			setAndColorByValue(r.createCell(4), fTiCellValue);
-			setAndColorByValue(r.createCell(5), fTaCellValue);
+		for (InformationRow row : rows) {
+			createInformationRow(offset++, row);
 		}
-		for (int i = 0; i < newInfos.size(); i++) {
-			NewInformation info = newInfos.get(i);
-			infoToRow.put(info, offset);
-			Row r = sheet.createRow(offset++);
-			Cell t = r.createCell(0);
-			t.setCellValue(info.getTiming());
-			colorByIsInstruction(t, info.isIsInstruction());
-			Cell msg = r.createCell(1);
-			msg.setCellValue(info.getMessage());
-			colorByOrigin(msg, info.getSourceConversationPartner().getName().equals("LLM"));
-			r.createCell(2).setCellValue(info.getTargetedBy().size());
-			r.createCell(3).setCellValue(info.getRepeatedBy().size());
-			Float fTi = info.getFeltTrustImmediately();
-			Float fTa = info.getFeltTrustAfterwards();
-			float fTiCellValue = fTi != null ? fTi.floatValue() : Float.NaN;
-			float fTaCellValue = fTa != null ? fTa.floatValue() : Float.NaN;
-			setAndColorByValue(r.createCell(4), fTiCellValue);
-			setAndColorByValue(r.createCell(5), fTaCellValue);
+	}
+
+	// streaming mode: writes the information rows in order (pre knowledge first, then new information) and directly
+	// fills the iT/T columns of all scenarios of one weight of the batch, names holds the scenario names
+	public void writeRows(List<NewInformation> newInfos, List<PreKnowledge> preKnowledge, TrustBatch batch,
+			int weightIndex, List<String> names) {
+		if (rows == null)
+			prepareRows(newInfos, preKnowledge);
+		writeRows(rows, batch, weightIndex, names);
+	}
+
+	void writeRows(List<InformationRow> informationRows, TrustBatch batch, int weightIndex, List<String> names) {
+		writeRows(informationRows, batch, weightIndex, names, null, null);
+	}
+
+	// sensitivity may be null, otherwise its columns for the weight follow the scenarios (see addSensitivity)
+	void writeRows(List<InformationRow> informationRows, TrustBatch batch, int weightIndex, List<String> names,
+			SensitivityResult sensitivity, String sensitivityName) {
+		createLeftBorderStyles();
+		rows = informationRows;
+		int scenarios = names.size();
+		for (int s = 0; s < scenarios; s++) {
+			int column = firstFreeColumn + 2 * s;
+			addTrustHeaders(names.get(s), column);
+			sheet.getRow(0).getCell(column).setCellStyle(bigHeaderLeftStyle);
+			sheet.getRow(1).getCell(column).setCellStyle(headerMessageLeftStyle);
+		}
+		int sensitivityColumn = firstFreeColumn + 2 * scenarios;
+		if (sensitivity != null) {
+			addSensitivityHeaders(sensitivityName, sensitivityColumn);
+			sheet.getRow(0).getCell(sensitivityColumn).setCellStyle(bigHeaderLeftStyle);
+			sheet.getRow(1).getCell(sensitivityColumn).setCellStyle(headerMessageLeftStyle);
+		}
+
+		int rowIndex = 2;
+		for (int node = 0; node < rows.size(); node++) {
+			Row r = createInformationRow(rowIndex++, rows.get(node));
+			addTrustCells(r, batch, node, weightIndex, scenarios);
+			if (sensitivity != null) {
+				addSensitivityCells(r, sensitivity, node, weightIndex, sensitivityColumn);
+				Cell first = r.getCell(sensitivityColumn);
+				first.setCellStyle(leftBorderVariant(first.getCellStyle()));
+			}
 		}
+
+		firstFreeColumn = sensitivity != null ? sensitivityColumn + SENSITIVITY_COLUMNS.length : sensitivityColumn;
 	}
 
-	public void addTrusts(HashMap<Information, Pair<Float, Float>> trusts, String name) {
-		Row headers0 = sheet.getRow(0);
-		Cell i = headers0.createCell(firstFreeColumn);
-		i.setCellValue(name);
-		i.setCellStyle(bigHeaderStyle);
-		i = headers0.createCell(firstFreeColumn + 1);
-		sheet.addMergedRegion(new CellRangeAddress(0, 0, firstFreeColumn, firstFreeColumn + 1));
+	private void addTrustCells(Row r, TrustBatch batch, int node, int weightIndex, int scenarios) {
+		for (int s = 0; s < scenarios; s++) {
+			int column = firstFreeColumn + 2 * s;
+			Cell iT = r.createCell(column);
+			setAndColorByValue(iT, batch.getInitialTrust(s)[node]);
+			iT.setCellStyle(leftBorderVariant(iT.getCellStyle()));
+			setAndColorByValue(r.createCell(column + 1), batch.getTrust(node, weightIndex, s));
+		}
+	}
 
-		Row headers = sheet.getRow(1);
+	private XSSFCellStyle leftBorderVariant(CellStyle style) {
+		if (style == trustStyle)
+			return trustLeftStyle;
+		if (style == distrustStyle)
+			return distrustLeftStyle;
+		return neutTrustLeftStyle;
+	}
 
-		i = headers.createCell(firstFreeColumn);
-		i.setCellValue("iT");
-		i.setCellStyle(headerMessageStyle);
-		i = headers.createCell(firstFreeColumn + 1);
-		i.setCellValue("T");
-		i.setCellStyle(headerMessageStyle);
+	private void prepareRows(List<NewInformation> newInfos, List<PreKnowledge> preKnowledge) {
+		rows = InformationRow.of(newInfos, preKnowledge);
+		int offset = 2;
+		for (PreKnowledge pre : preKnowledge) {
+			infoToRow.put(pre, offset++);
+		}
+		for (NewInformation info : newInfos) {
+			infoToRow.put(info, offset++);
+		}
+	}
+
+	private Row createInformationRow(int rowIndex, InformationRow row) {
+		Row r = sheet.createRow(rowIndex);
+		Cell t = r.createCell(0);
+		t.setCellValue(row.timing());
+		colorByIsInstruction(t, row.isInstruction());
+		Cell msg = r.createCell(1);
+		msg.setCellValue(row.message());
+		colorByOrigin(msg, row.isLLM());
+		r.createCell(2).setCellValue(row.arguments());
+		r.createCell(3).setCellValue(row.repetitions());
+		setAndColorByValue(r.createCell(4), row.fTi());
+		setAndColorByValue(r.createCell(5), row.fTa());
+		if (streaming) {
+			estimateWidth(0, Integer.toString(row.timing()).length());
+			estimateWidth(1, row.message() != null ? row.message().length() : 0);
+		}
+		return r;
+	}
+
+	private void estimateWidth(int column, int characters) {
+		estimatedWidths[column] = Math.max(estimatedWidths[column], Math.min(characters, MAX_ESTIMATED_WIDTH));
+	}
+
+	private void checkNotStreaming() {
+		if (streaming)
+			throw new IllegalStateException("Rows cannot be revisited in streaming mode, use writeRows");
+	}
+
+	public void addTrusts(HashMap<Information, Pair<Float, Float>> trusts, String name) {
+		checkNotStreaming();
+		addTrustHeaders(name, firstFreeColumn);
 
 		trusts.forEach((info, scores) -> {
 			int rowIndex = infoToRow.get(info);
@@ -238,7 +372,127 @@ public class WorkbookController {
 		firstFreeColumn += 2;
 	}
 
+	// values are indexed like the rows created by initialize: pre knowledge first, then new information
+	// (which is the node order of the ArgumentationGraph)
+	public void addTrusts(float[] initialTrust, float[] trust, String name) {
+		checkNotStreaming();
+		addTrustHeaders(name, firstFreeColumn);
+
+		for (int i = 0; i < initialTrust.length; i++) {
+			Row current = sheet.getRow(i + 2);
+			setAndColorByValue(current.createCell(firstFreeColumn), initialTrust[i]);
+			setAndColorByValue(current.createCell(firstFreeColumn + 1), trust[i]);
+		}
+		setBorderLeft(firstFreeColumn);
+
+		firstFreeColumn += 2;
+	}
+
+	// Monte Carlo columns of one weight next to the iT/T columns: mean, quantiles and sign flip probability
+	public void addSensitivity(SensitivityResult result, int weightIndex, String name) {
+		checkNotStreaming();
+		addSensitivityHeaders(name, firstFreeColumn);
+		for (int i = 0; i < result.size(); i++) {
+			addSensitivityCells(sheet.getRow(i + 2), result, i, weightIndex, firstFreeColumn);
+		}
+		setBorderLeft(firstFreeColumn);
+		firstFreeColumn += SENSITIVITY_COLUMNS.length;
+	}
+
+	// a new sheet "timeline" with the information rows and for each configuration one column per step of the
+	// timeline holding the trust after that step, empty before the information was received
+	// works in streaming mode as well, the rows are written once and in order
+	void addTimeline(List<InformationRow> informationRows, TrustTimeline timeline, List<TrustTimeline.Series> series,
+			List<String> names) {
+		sizeColumns();
+		createSheet("timeline");
+		createLeftBorderStyles();
+		rows = informationRows;
+		int steps = timeline.steps();
+		Row headers0 = sheet.getRow(0);
+		Row headers1 = sheet.getRow(1);
+		for (int s = 0; s < names.size(); s++) {
+			int column = firstFreeColumn + s * steps;
+			Cell name = headers0.createCell(column);
+			name.setCellValue(names.get(s));
+			name.setCellStyle(bigHeaderLeftStyle);
+			if (steps > 1)
+				sheet.addMergedRegion(new CellRangeAddress(0, 0, column, column + steps - 1));
+			for (int step = 0; step < steps; step++) {
+				Cell time = headers1.createCell(column + step);
+				if (step == 0)
+					time.setCellValue("pre");
+				else
+					time.setCellValue(timeline.stepTiming(step));
+				time.setCellStyle(step == 0 ? headerMessageLeftStyle : headerStyle);
+			}
+		}
+		for (int node = 0; node < rows.size(); node++) {
+			Row r = createInformationRow(node + 2, rows.get(node));
+			for (int s = 0; s < names.size(); s++) {
+				float[] trust = series.get(s).trustOf(node);
+				for (int step = 0; step < steps; step++) {
+					if (!Float.isNaN(trust[step]))
+						setAndColorByValue(r.createCell(firstFreeColumn + s * steps + step), trust[step]);
+				}
+			}
+		}
+		firstFreeColumn += names.size() * steps;
+	}
+
+	private void addSensitivityHeaders(String name, int column) {
+		Row headers0 = sheet.getRow(0);
+		Cell i = headers0.createCell(column);
+		i.setCellValue(name);
+		i.setCellStyle(bigHeaderStyle);
+		for (int c = 1; c < SENSITIVITY_COLUMNS.length; c++) {
+			headers0.createCell(column + c);
+		}
+		sheet.addMergedRegion(new CellRangeAddress(0, 0, column, column + SENSITIVITY_COLUMNS.length - 1));
+
+		Row headers = sheet.getRow(1);
+		for (int c = 0; c < SENSITIVITY_COLUMNS.length; c++) {
+			i = headers.createCell(column + c);
+			i.setCellValue(SENSITIVITY_COLUMNS[c]);
+			i.setCellStyle(headerMessageStyle);
+		}
+	}
+
+	private void addSensitivityCells(Row r, SensitivityResult result, int node, int weightIndex, int column) {
+		setAndColorByValue(r.createCell(column), result.getMean(node, weightIndex));
+		setAndColorByValue(r.createCell(column + 1), result.getQuantile(node, weightIndex, 0.05));
+		setAndColorByValue(r.createCell(column + 2), result.getQuantile(node, weightIndex, 0.5));
+		setAndColorByValue(r.createCell(column + 3), result.getQuantile(node, weightIndex, 0.95));
+		r.createCell(column + 4).setCellValue(result.getSignFlipProbability(node, weightIndex));
+	}
+
+	private void addTrustHeaders(String name, int column) {
+		Row headers0 = sheet.getRow(0);
+		Cell i = headers0.createCell(column);
+		i.setCellValue(name);
+		i.setCellStyle(bigHeaderStyle);
+		i = headers0.createCell(column + 1);
+		sheet.addMergedRegion(new CellRangeAddress(0, 0, column, column + 1));
+
+		Row headers = sheet.getRow(1);
+
+		i = headers.createCell(column);
+		i.setCellValue("iT");
+		i.setCellStyle(headerMessageStyle);
+		i = headers.createCell(column + 1);
+		i.setCellValue("T");
+		i.setCellStyle(headerMessageStyle);
+	}
+
 	private void sizeColumns() {
+		if (streaming) {
+			// no auto size pass over the (flushed) rows: fixed columns use the tracked lengths, trust columns a constant
+			for (int i = 0; i < firstFreeColumn; i++) {
+				int characters = i < estimatedWidths.length ? estimatedWidths[i] : 5;
+				sheet.setColumnWidth(i, (characters + 2) * 256);
+			}
+			return;
+		}
 		for (int i = 0; i < firstFreeColumn; i++) {
 			sheet.autoSizeColumn(i);
 		}
@@ -248,8 +502,10 @@ public class WorkbookController {
 		CellRangeAddress hdr = new CellRangeAddress(0, 2, columnIndex, columnIndex);
 		RegionUtil.setBorderLeft(BorderStyle.MEDIUM, hdr, sheet);
 		RegionUtil.setLeftBorderColor(IndexedColors.BLACK.getIndex(), hdr, sheet);
-		// use messageMap to determine row count
-		CellRangeAddress adr = new CellRangeAddress(2, infoToRow.size() + 1, columnIndex, columnIndex);
+		// down to the last information row, there are none before initialize
+		if (sheet.getLastRowNum() < 2)
+			return;
+		CellRangeAddress adr = new CellRangeAddress(2, sheet.getLastRowNum(), columnIndex, columnIndex);
 		RegionUtil.setBorderLeft(BorderStyle.MEDIUM, adr, sheet);
 		RegionUtil.setLeftBorderColor(IndexedColors.WHITE.getIndex(), adr, sheet);
 	}
@@ -282,10 +538,17 @@ public class WorkbookController {
 	}
 
 	public void write(String file) throws IOException {
-		sizeColumns();
 		String path = FilenameUtils.removeExtension(file) + "-trust.xlsx";
-		try (FileOutputStream o = new FileOutputStream(path)) {
-			wb.write(o);
+		try {
+			sizeColumns();
+			try (FileOutputStream o = new FileOutputStream(path)) {
+				wb.write(o);
+			}
+		} finally {
+			if (streaming) {
+				// removes the temporary files of the flushed rows, also when the write failed
+				((SXSSFWorkbook) wb).dispose();
+			}
 			wb.close();
 		}
 	}
@@ -0,0 +1,118 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AnalysisCoordinatorTest {
+
+	@TempDir
+	Path folder;
+
+	// hangs in its first start, dies at once in the second and is the real AnalysisWorker from then on
+	// the starts are counted as files in the folder given as first argument
+	static class FlakyWorker {
+		public static void main(String[] args) throws Exception {
+			Path starts = Paths.get(args[0]);
+			Files.createTempFile(starts, "start", "");
+			long start;
+			try (Stream<Path> s = Files.list(starts)) {
+				start = s.count();
+			}
+			if (start == 1) {
+				System.out.println(AnalysisWorker.READY + "," + AnalysisWorker.VERSION);
+				System.out.flush();
+				Thread.sleep(Long.MAX_VALUE);
+			}
+			if (start == 2)
+				System.exit(1);
+			AnalysisWorker.main(Arrays.copyOfRange(args, 1, args.length));
+		}
+	}
+
+	// the conversations are put into the graph cache, so the workers never load a KEML file except the broken one
+	File[] corpus(AnalysisOptions options) throws Exception {
+		Path source = Files.createDirectories(folder.resolve("keml"));
+		ConversationCache cache = ConversationCache.of(options);
+		for (int seed = 0; seed < 6; seed++) {
+			Path file = source.resolve("conversation" + seed + ".keml");
+			Files.writeString(file, "conversation " + seed);
+			cache.write(AnalysisManifest.hash(Files.readAllBytes(file)), CompactConversation.of(
+					new ConversationGenerator(seed).partners(1 + seed % 3).messages(20).newInformation(60).links(120)
+							.generate()));
+		}
+		Files.writeString(source.resolve("broken.keml"), "FAIL");
+		File[] files = source.toFile().listFiles();
+		Arrays.sort(files);
+		return files;
+	}
+
+	@Test
+	void failedShardsAreRetriedWithFreshWorkers() throws Exception {
+		AnalysisOptions options = AnalysisOptions.parse(new String[] { folder.toString(), "--workers", "1",
+				"--shards", "2", "--shard-timeout", "5", "--graph-cache", "--corpus", "--metrics", "--output", "csv" });
+		File[] files = corpus(options);
+		File target = Files.createDirectories(folder.resolve("analysis")).toFile();
+		Path starts = Files.createDirectories(folder.resolve("starts"));
+		List<String> command = new ArrayList<>(AnalysisCoordinator.workerCommand(options));
+		int main = command.indexOf(AnalysisWorker.class.getName());
+		command.set(main, FlakyWorker.class.getName());
+		command.add(main + 1, starts.toString());
+
+		List<AnalysisProvider.FileResult> results = new AnalysisCoordinator(options, command).run(files, target);
+		try (Stream<Path> s = Files.list(starts)) {
+			assertEquals(3, s.count());
+		}
+		assertEquals(files.length, results.size());
+		for (AnalysisProvider.FileResult r : results) {
+			if (r.name().equals("broken.keml")) {
+				// reported by the worker and not retried
+				assertInstanceOf(AnalysisCoordinator.WorkerFailure.class, r.failure());
+				assertFalse(r.failure().getMessage().startsWith("Shard failed"), r.failure().getMessage());
+			} else {
+				assertNull(r.failure(), r.name());
+				assertNotNull(r.statistics(), r.name());
+				assertTrue(r.metrics().nodes > 0, r.name());
+			}
+		}
+
+		// the statistics sent back give the same corpus summary as a run in this process
+		File inProcess = Files.createDirectories(folder.resolve("in-process")).toFile();
+		AnalysisProvider.writeCorpusCSVs(results, target, options);
+		AnalysisProvider.writeCorpusCSVs(AnalysisProvider.analyseCorpus(files, inProcess, options), inProcess, options);
+		for (String name : List.of("-general.csv", "-arguments.csv")) {
+			assertArrayEquals(Files.readAllBytes(inProcess.toPath().resolve(AnalysisProvider.corpusName + name)),
+					Files.readAllBytes(target.toPath().resolve(AnalysisProvider.corpusName + name)), name);
+		}
+	}
+
+	@Test
+	void workersGetTheOptionsOfTheAnalysisOnly() {
+		AnalysisOptions options = AnalysisOptions.parse(new String[] { "corpus", "--workers", "2", "--watch",
+				"--shards", "8", "--metrics", "--shard-timeout", "60", "--incremental", "--parallel", "3" });
+		List<String> command = AnalysisCoordinator.workerCommand(options);
+		int main = command.indexOf(AnalysisWorker.class.getName());
+		assertEquals(List.of("corpus", "--metrics", "--incremental", "--parallel", "3"),
+				command.subList(main + 1, command.size()));
+		assertThrows(IllegalArgumentException.class,
+				() -> AnalysisOptions.parse(new String[] { "corpus", "--workers", "0" }));
+	}
+
+}
@@ -0,0 +1,115 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AnalysisServerTest {
+
+	@TempDir
+	Path folder;
+
+	AnalysisServer server;
+	HttpClient http = HttpClient.newHttpClient();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new AnalysisServer(0, 4);
+		server.start();
+	}
+
+	@AfterEach
+	void stop() {
+		server.stop();
+	}
+
+	HttpRequest.Builder request(String query, String body) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/analyse?" + query))
+				.POST(HttpRequest.BodyPublishers.ofString(body));
+	}
+
+	HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+		return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	@Test
+	void onlyLocalToolsWithTheTokenAreServed() throws Exception {
+		Path file = Files.createDirectories(folder.resolve("keml")).resolve("chat.json");
+		KemlJsonReaderTest.writeJson(KemlJsonReaderTest.conversation(2), file);
+		String query = "path=" + file + "&output=csv";
+		String bearer = "Bearer " + server.getToken();
+
+		assertEquals(401, send(request(query, "")).statusCode());
+		assertEquals(401, send(request(query, "").header("Authorization", "Bearer " + AnalysisServer.newToken()))
+				.statusCode());
+		assertEquals(403, send(request(query, "").header("Authorization", bearer)
+				.header("Origin", "http://example.com")).statusCode());
+		assertFalse(Files.exists(folder.resolve("analysis")));
+		assertEquals(200, send(request(query, "").header("Authorization", bearer)).statusCode());
+		assertTrue(Files.exists(folder.resolve("analysis/chat-general.csv")));
+
+		// a name of a web page that resolves to the loopback
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+			OutputStream out = socket.getOutputStream();
+			out.write(("POST /analyse?" + query + " HTTP/1.1\r\nHost: attacker.example:" + server.getPort()
+					+ "\r\nAuthorization: " + bearer + "\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			String status = new String(socket.getInputStream().readNBytes(12), StandardCharsets.UTF_8);
+			assertEquals("HTTP/1.1 403", status);
+		}
+		assertTrue(AnalysisServer.isLoopback("localhost:8090"));
+		assertTrue(AnalysisServer.isLoopback("[::1]:8090"));
+		assertTrue(AnalysisServer.isLoopback("127.0.0.1"));
+		assertFalse(AnalysisServer.isLoopback("localhost.example:8090"));
+		assertFalse(AnalysisServer.isLoopback(null));
+	}
+
+	@Test
+	void malformedBodiesAreBadRequests() throws Exception {
+		String bearer = "Bearer " + server.getToken();
+		String query = "out=" + folder.resolve("out") + "&output=csv";
+		for (String body : List.of("{\"title\": ", "{\"author\": {\"messages\": [{\"timing\": \"soon\"}]}}")) {
+			HttpResponse<String> response = send(request(query, body).header("Authorization", bearer));
+			assertEquals(400, response.statusCode(), body + ": " + response.body());
+		}
+	}
+
+	@Test
+	void outputLocksAreRemovedAfterTheirLastRequest() throws Exception {
+		Path file = folder.resolve("chat.json");
+		KemlJsonReaderTest.writeJson(KemlJsonReaderTest.conversation(3), file);
+		String json = Files.readString(file);
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			// three requests per base path
+			String query = "out=" + folder.resolve("out") + "&name=chat" + i % 4 + "&output=csv";
+			responses.add(http.sendAsync(request(query, json)
+					.header("Authorization", "Bearer " + server.getToken()).build(), HttpResponse.BodyHandlers.ofString()));
+		}
+		for (CompletableFuture<HttpResponse<String>> response : responses) {
+			assertEquals(200, response.get().statusCode(), response.get().body());
+		}
+		assertTrue(server.outputLocks.isEmpty());
+	}
+
+}
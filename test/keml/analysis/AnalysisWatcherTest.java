@@ -0,0 +1,69 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import keml.Conversation;
+
+class AnalysisWatcherTest {
+
+	@TempDir
+	Path folder;
+
+	static Conversation conversation(ConversationGenerator.Shape shape) {
+		return new ConversationGenerator(5).partners(2).messages(20).newInformation(60).links(120).shape(shape)
+				.generate();
+	}
+
+	// outputs the new analysis does not write again must not be left behind from the one before
+	@Test
+	void outputsOfThePreviousAnalysisAreReplaced() throws Exception {
+		Path source = Files.createDirectories(folder.resolve("keml"));
+		File target = Files.createDirectories(folder.resolve("analysis")).toFile();
+		File file = source.resolve("chat.keml").toFile();
+		AnalysisManifest manifest = AnalysisManifest.load(target.toPath());
+
+		KemlJsonReaderTest.writeJson(conversation(ConversationGenerator.Shape.RANDOM_DAG), file.toPath());
+		AnalysisOptions workbooks = AnalysisOptions.parse(new String[] { folder.toString(), "--incremental", "--samples",
+				"20" });
+		assertNull(AnalysisWatcher.analyseAtomically(file, target, workbooks, manifest).failure());
+		assertEquals(List.of("chat-arguments.csv", "chat-general.csv", "chat-w10--trust.xlsx", "chat-w10-sensitivity.csv"),
+				outputs(target, "chat-w10", "chat-a", "chat-g"));
+		assertFalse(manifest.get("chat.keml").cyclic());
+
+		// cyclic now and trust records instead of workbooks
+		KemlJsonReaderTest.writeJson(conversation(ConversationGenerator.Shape.CYCLIC), file.toPath());
+		AnalysisOptions records = AnalysisOptions.parse(new String[] { folder.toString(), "--incremental", "--samples",
+				"20", "--output", "csv" });
+		assertNull(AnalysisWatcher.analyseAtomically(file, target, records, manifest).failure());
+		assertEquals(List.of("chat-arguments.csv", "chat-cycles.csv", "chat-general.csv", "chat-trust.csv"),
+				outputs(target, "chat"));
+		assertTrue(manifest.get("chat.keml").cyclic());
+
+		// acyclic again, without a manifest
+		KemlJsonReaderTest.writeJson(conversation(ConversationGenerator.Shape.RANDOM_DAG), file.toPath());
+		AnalysisOptions plain = AnalysisOptions.parse(new String[] { folder.toString(), "--output", "csv" });
+		assertNull(AnalysisWatcher.analyseAtomically(file, target, plain, null).failure());
+		assertEquals(List.of("chat-arguments.csv", "chat-general.csv", "chat-trust.csv"), outputs(target, "chat"));
+	}
+
+	// sorted names of the files in folder that start with one of the prefixes
+	static List<String> outputs(File folder, String... prefixes) throws Exception {
+		try (Stream<Path> files = Files.list(folder.toPath())) {
+			return files.map(p -> p.getFileName().toString())
+					.filter(name -> Stream.of(prefixes).anyMatch(name::startsWith)).sorted().toList();
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArgumentationCsvTest {
+
+	@TempDir
+	Path folder;
+
+	// the sparse file must hold exactly the non-zero cells of the matrix file, with the same attacks and supports
+	@Test
+	void sparseLinksMatchTheMatrix() throws IOException {
+		for (int seed = 0; seed < 6; seed++) {
+			ConversationAnalyser analyser = new ConversationAnalyser(new ConversationGenerator(seed)
+					.partners(1 + seed * 2).messages(60).newInformation(300).preKnowledge(12).links(700).generate());
+			Path dense = folder.resolve(seed + "-arguments.csv");
+			Path sparse = folder.resolve(seed + "-arguments-sparse.csv");
+			analyser.writeArgumentationCSV(dense.toString());
+			analyser.writeSparseArgumentationCSV(sparse.toString());
+
+			Map<String, String> expected = new HashMap<>();
+			try (CSVParser parser = CSVParser.parse(dense, StandardCharsets.UTF_8, CSVFormat.DEFAULT)) {
+				List<CSVRecord> records = parser.getRecords();
+				CSVRecord headers = records.get(0);
+				assertEquals(records.size(), headers.size());
+				for (CSVRecord r : records.subList(1, records.size())) {
+					for (int col = 1; col < r.size(); col++) {
+						if (!r.get(col).equals("0/0"))
+							expected.put(r.get(0) + "->" + headers.get(col), r.get(col));
+					}
+				}
+			}
+			Map<String, String> actual = new HashMap<>();
+			try (CSVParser parser = CSVParser.parse(sparse, StandardCharsets.UTF_8,
+					CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build())) {
+				for (CSVRecord r : parser) {
+					String cell = r.get("Source") + "->" + r.get("Target");
+					assertTrue(Integer.parseInt(r.get("Attacks")) + Integer.parseInt(r.get("Supports"))
+							+ Integer.parseInt(r.get("Supplements")) > 0, cell);
+					// cells with supplements only are 0/0 in the matrix
+					if (!r.get("Attacks").equals("0") || !r.get("Supports").equals("0"))
+						actual.put(cell, r.get("Attacks") + "/" + r.get("Supports"));
+				}
+			}
+			assertTrue(!expected.isEmpty(), "seed " + seed);
+			assertEquals(expected, actual, "seed " + seed);
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import keml.InformationLinkType;
+
+class ConversationCacheTest {
+
+	@TempDir
+	Path folder;
+
+	static CompactConversation conversation(int seed) {
+		return CompactConversation.of(new ConversationGenerator(seed).partners(1 + seed % 4).messages(40)
+				.newInformation(200).preKnowledge(10).repetitions(20).links(500).generate());
+	}
+
+	@Test
+	void conversationsComeBackUnchanged() throws Exception {
+		ConversationCache cache = new ConversationCache(folder);
+		for (int seed = 0; seed < 4; seed++) {
+			CompactConversation conv = conversation(seed);
+			cache.write("hash" + seed, conv);
+			CompactConversation read = cache.read("hash" + seed);
+			assertNotNull(read);
+			assertEquals(conv.title, read.title);
+			assertArrayEquals(conv.partners, read.partners);
+			assertArrayEquals(conv.sends, read.sends);
+			assertArrayEquals(conv.receives, read.receives);
+			assertArrayEquals(conv.interrupted, read.interrupted);
+			assertEquals(conv.preKnowledgeCount, read.preKnowledgeCount);
+			assertArrayEquals(conv.messages, read.messages);
+			assertArrayEquals(conv.timing, read.timing);
+			assertArrayEquals(conv.partnerOf, read.partnerOf);
+			assertArrayEquals(conv.instruction, read.instruction);
+			assertArrayEquals(conv.feltTrustImmediately, read.feltTrustImmediately);
+			assertArrayEquals(conv.feltTrustAfterwards, read.feltTrustAfterwards);
+			assertArrayEquals(conv.repetitions, read.repetitions);
+			assertArrayEquals(conv.linkSource, read.linkSource);
+			assertArrayEquals(conv.linkTarget, read.linkTarget);
+			assertArrayEquals(conv.linkType, read.linkType);
+			assertArrayEquals(conv.receiveTiming, read.receiveTiming);
+			assertArrayEquals(conv.receiveOf, read.receiveOf);
+			assertArrayEquals(conv.repeatReceive, read.repeatReceive);
+			assertArrayEquals(conv.repeatNode, read.repeatNode);
+		}
+	}
+
+	@Test
+	void missingDamagedAndOldFilesAreMisses() throws Exception {
+		ConversationCache cache = new ConversationCache(folder);
+		assertNull(cache.read("missing"));
+		CompactConversation conv = conversation(1);
+		cache.write("good", conv);
+		byte[] good = Files.readAllBytes(cache.path("good"));
+
+		// cut off, with bytes appended
+		Files.write(cache.path("cut"), Arrays.copyOf(good, good.length / 2));
+		assertNull(cache.read("cut"));
+		Files.write(cache.path("empty"), new byte[0]);
+		assertNull(cache.read("empty"));
+		Files.write(cache.path("longer"), Arrays.copyOf(good, good.length + 4));
+		assertNull(cache.read("longer"));
+
+		// other magic or version
+		assertNull(cache.read(write(cache, "magic", good, 0, 0x12345678)));
+		assertNull(cache.read(write(cache, "version", good, 4, ConversationCache.VERSION + 1)));
+
+		// counts of the header that do not fit into the file must not be allocated
+		for (int offset = 8; offset < 32; offset += 4) {
+			for (int count : new int[] { -1, Integer.MAX_VALUE, good.length }) {
+				assertNull(cache.read(write(cache, "count", good, offset, count)), "offset " + offset);
+			}
+		}
+		int p = conv.partners.length;
+		int n = conv.size();
+		int links = conv.getLinkCount();
+		// indexes between the arrays that point outside of them
+		int partnerOf = 32 + 4 * (3 * p + n);
+		int receiveOf = 32 + 4 * (3 * p + 3 * n);
+		int linkSource = 32 + 4 * (3 * p + 6 * n);
+		int repeatNode = linkSource + 4 * (2 * links + conv.receiveTiming.length + conv.repeatNode.length);
+		for (int offset : new int[] { partnerOf, receiveOf + 4 * (n - 1), linkSource, linkSource + 4 * links,
+				repeatNode }) {
+			for (int index : new int[] { 1_000_000, -2 }) {
+				assertNull(cache.read(write(cache, "index", good, offset, index)), "offset " + offset);
+			}
+		}
+		// the link type of the first link, after the instruction flags
+		byte[] type = good.clone();
+		type[repeatNode + 4 * conv.repeatNode.length + n] = (byte) (InformationLinkType.values().length - 1);
+		Files.write(cache.path("type"), type);
+		assertNotNull(cache.read("type"));
+		type[repeatNode + 4 * conv.repeatNode.length + n] = (byte) InformationLinkType.values().length;
+		Files.write(cache.path("type"), type);
+		assertNull(cache.read("type"));
+
+		// the byte length of the title, after all arrays
+		int title = 32 + 4 * (3 * p + 6 * n + 2 * links + conv.receiveTiming.length + 2 * conv.repeatNode.length) + n
+				+ links;
+		assertNotNull(cache.read(write(cache, "title", good, title, ByteBuffer.wrap(good, title, 4)
+				.order(ByteOrder.LITTLE_ENDIAN).getInt())));
+		assertNull(cache.read(write(cache, "title", good, title, Integer.MAX_VALUE)));
+
+		// unreadable, here a folder in place of the file
+		Files.createDirectories(cache.path("folder"));
+		assertNull(cache.read("folder"));
+	}
+
+	// the file with one int replaced, under the given hash
+	static String write(ConversationCache cache, String hash, byte[] file, int offset, int value) throws Exception {
+		byte[] changed = file.clone();
+		ByteBuffer.wrap(changed).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+		Files.write(cache.path(hash), changed);
+		return hash;
+	}
+
+}
@@ -0,0 +1,78 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+class FixedPointTrustSolverTest {
+
+	static float[][] initialTrusts(ArgumentationGraph graph) {
+		return TrustEvaluator.standardTrustConfigurations(graph.getPartnerNames()).stream()
+				.map(Pair<String, Map<String, Float>>::getValue1)
+				.map(trust -> graph.initialTrust(trust, 1f))
+				.toArray(float[][]::new);
+	}
+
+	// without cycles every component is a single node, so the solver must do exactly what the DAG pass does
+	@Test
+	void acyclicGraphsGiveTheSameTrustAsTheTopologicalPass() {
+		for (ConversationGenerator.Shape shape : List.of(ConversationGenerator.Shape.CHAIN,
+				ConversationGenerator.Shape.FAN_IN, ConversationGenerator.Shape.RANDOM_DAG)) {
+			for (int seed = 0; seed < 4; seed++) {
+				ArgumentationGraph graph = ArgumentationGraph.compile(new ConversationGenerator(seed).partners(3)
+						.messages(40).newInformation(500).preKnowledge(8).repetitions(40).links(1500).shape(shape)
+						.depth(10).generate());
+				assertTrue(graph.isAcyclic());
+				FixedPointTrustSolver solver = new FixedPointTrustSolver(graph);
+				assertTrue(solver.getCycles().isEmpty());
+
+				int[] weights = TrustEvaluator.standardWeights();
+				float[][] initialTrusts = initialTrusts(graph);
+				TrustBatch expected = graph.evaluate(weights, initialTrusts);
+				List<FixedPointTrustSolver.Convergence> convergences = new ArrayList<>();
+				TrustBatch actual = solver.solve(weights, initialTrusts, convergences);
+				assertEquals(expected.size(), actual.size());
+				for (int w = 0; w < weights.length; w++) {
+					for (int s = 0; s < initialTrusts.length; s++) {
+						// bit for bit, the summation order is the same
+						assertArrayEquals(expected.getTrust(w, s), actual.getTrust(w, s), 0f, shape + " seed " + seed);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void cyclicGraphsConvergeToAFixedPoint() {
+		int converged = 0;
+		for (int seed = 0; seed < 4; seed++) {
+			ArgumentationGraph graph = ArgumentationGraph.compile(new ConversationGenerator(seed).partners(2)
+					.messages(30).newInformation(300).links(900).shape(ConversationGenerator.Shape.CYCLIC).cycles(10)
+					.generate());
+			assertFalse(graph.isAcyclic());
+			FixedPointTrustSolver solver = new FixedPointTrustSolver(graph);
+			float[] initialTrust = initialTrusts(graph)[0];
+			for (int w = 2; w <= 10; w++) {
+				float[] trust = new float[graph.size()];
+				FixedPointTrustSolver.Convergence convergence = solver.solve(initialTrust, w, trust);
+				if (!convergence.converged())
+					continue;
+				converged++;
+				for (int node = 0; node < graph.size(); node++) {
+					assertEquals(trust[node], graph.nodeTrust(node, initialTrust[node], w, trust), 1e-4,
+							"seed " + seed + ", weight " + w + ", node " + node);
+				}
+			}
+		}
+		assertTrue(converged > 0);
+	}
+
+}
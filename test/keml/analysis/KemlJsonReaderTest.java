@@ -0,0 +1,209 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import keml.Conversation;
+import keml.Information;
+import keml.InformationLink;
+import keml.Message;
+import keml.ReceiveMessage;
+import keml.io.KemlFileHandler;
+
+class KemlJsonReaderTest {
+
+	static final String NS = "http://keml#//";
+
+	@TempDir
+	Path folder;
+
+	static Conversation conversation(int seed) {
+		Conversation conv = new ConversationGenerator(seed).partners(1 + seed % 4).messages(30 + seed)
+				.newInformation(100 + seed * 5).preKnowledge(seed % 6).repetitions(15).links(250)
+				.shape(ConversationGenerator.Shape.values()[seed % 3]).generate();
+		conv.setTitle("Conversation " + seed + " \"quoted\"");
+		return conv;
+	}
+
+	@Test
+	void readsWhatTheModelHolds() throws IOException {
+		for (int seed = 0; seed < 6; seed++) {
+			Conversation conv = conversation(seed);
+			Path file = folder.resolve(seed + ".json");
+			writeJson(conv, file);
+			assertSame(CompactConversation.of(conv), KemlJsonReader.read(file), "seed " + seed);
+		}
+	}
+
+	// parity with the EMF model that keml.io loads from the same file
+	@Test
+	void readsTheSameAsKemlIo() throws IOException {
+		for (int seed = 0; seed < 6; seed++) {
+			Conversation conv = conversation(seed);
+			Path file = folder.resolve(seed + ".json");
+			writeJson(conv, file);
+			Conversation loaded = new KemlFileHandler().loadKemlJSON(file.toAbsolutePath().toString());
+			// builds of keml.io without the JSON resource give back something else, then there is nothing to compare
+			assumeTrue(conv.getTitle().equals(loaded.getTitle()), "keml.io did not load the written JSON");
+			assertSame(CompactConversation.of(loaded), KemlJsonReader.read(file), "seed " + seed);
+		}
+	}
+
+	@Test
+	void jsonIsToldFromXmi() throws IOException {
+		Conversation conv = conversation(1);
+		Path json = folder.resolve("chat.keml");
+		writeJson(conv, json);
+		Path xmi = folder.resolve("chat-xmi.keml");
+		ConversationGenerator.write(conv, xmi);
+		assertTrue(KemlJsonReader.isJson(json));
+		assertFalse(KemlJsonReader.isJson(xmi));
+		assertTrue(KemlJsonReader.isJson("\uFEFF \n {}".getBytes(StandardCharsets.UTF_8)));
+		assertFalse(KemlJsonReader.isJson(new byte[0]));
+	}
+
+	static void assertSame(CompactConversation expected, CompactConversation actual, String what) {
+		assertEquals(expected.title, actual.title, what);
+		assertArrayEquals(expected.partners, actual.partners, what);
+		assertArrayEquals(expected.sends, actual.sends, what);
+		assertArrayEquals(expected.receives, actual.receives, what);
+		assertArrayEquals(expected.interrupted, actual.interrupted, what);
+		assertEquals(expected.preKnowledgeCount, actual.preKnowledgeCount, what);
+		assertArrayEquals(expected.messages, actual.messages, what);
+		assertArrayEquals(expected.timing, actual.timing, what);
+		assertArrayEquals(expected.partnerOf, actual.partnerOf, what);
+		assertArrayEquals(expected.instruction, actual.instruction, what);
+		assertArrayEquals(expected.feltTrustImmediately, actual.feltTrustImmediately, what);
+		assertArrayEquals(expected.feltTrustAfterwards, actual.feltTrustAfterwards, what);
+		assertArrayEquals(expected.repetitions, actual.repetitions, what);
+		// links may come in another order
+		assertArrayEquals(links(expected), links(actual), what);
+	}
+
+	static long[] links(CompactConversation conv) {
+		long[] res = new long[conv.getLinkCount()];
+		for (int l = 0; l < res.length; l++) {
+			res[l] = ((long) conv.linkTarget[l] << 36) | ((long) conv.linkSource[l] << 4) | conv.linkType[l];
+		}
+		Arrays.sort(res);
+		return res;
+	}
+
+	// ************* KEML JSON in the EMF JSON layout of keml.io *****************
+
+	static void writeJson(Conversation conv, Path file) throws IOException {
+		Map<Object, String> refs = new IdentityHashMap<>();
+		for (int p = 0; p < conv.getConversationPartners().size(); p++) {
+			refs.put(conv.getConversationPartners().get(p), "//@conversationPartners." + p);
+		}
+		for (int i = 0; i < conv.getAuthor().getPreknowledge().size(); i++) {
+			refs.put(conv.getAuthor().getPreknowledge().get(i), "//@author/@preknowledge." + i);
+		}
+		List<Message> messages = conv.getAuthor().getMessages();
+		for (int m = 0; m < messages.size(); m++) {
+			if (messages.get(m) instanceof ReceiveMessage receive) {
+				for (int g = 0; g < receive.getGenerates().size(); g++) {
+					refs.put(receive.getGenerates().get(g), "//@author/@messages." + m + "/@generates." + g);
+				}
+			}
+		}
+		try (Writer writer = Files.newBufferedWriter(file);
+				JsonGenerator json = new JsonFactory().createGenerator(writer).useDefaultPrettyPrinter()) {
+			json.writeStartObject();
+			json.writeStringField("eClass", NS + "Conversation");
+			json.writeStringField("title", conv.getTitle());
+			json.writeObjectFieldStart("author");
+			json.writeStringField("name", conv.getAuthor().getName());
+			json.writeArrayFieldStart("preknowledge");
+			for (Information pre : conv.getAuthor().getPreknowledge()) {
+				writeInformation(json, pre, refs);
+			}
+			json.writeEndArray();
+			json.writeArrayFieldStart("messages");
+			for (Message m : messages) {
+				json.writeStartObject();
+				json.writeStringField("eClass", NS + (m instanceof ReceiveMessage ? "ReceiveMessage" : "SendMessage"));
+				json.writeFieldName("counterPart");
+				writeRef(json, refs.get(m.getCounterPart()));
+				json.writeNumberField("timing", m.getTiming());
+				json.writeStringField("content", m.getContent());
+				if (m instanceof ReceiveMessage receive) {
+					json.writeArrayFieldStart("generates");
+					for (Information info : receive.getGenerates()) {
+						writeInformation(json, info, refs);
+					}
+					json.writeEndArray();
+					if (!receive.getRepeats().isEmpty()) {
+						json.writeArrayFieldStart("repeats");
+						for (Information info : receive.getRepeats()) {
+							writeRef(json, refs.get(info));
+						}
+						json.writeEndArray();
+					}
+					if (receive.isIsInterrupted())
+						json.writeBooleanField("isInterrupted", true);
+				}
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			json.writeEndObject();
+			json.writeArrayFieldStart("conversationPartners");
+			for (var partner : conv.getConversationPartners()) {
+				json.writeStartObject();
+				json.writeStringField("name", partner.getName());
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			json.writeEndObject();
+		}
+	}
+
+	static void writeInformation(JsonGenerator json, Information info, Map<Object, String> refs) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("message", info.getMessage());
+		if (info.isIsInstruction())
+			json.writeBooleanField("isInstruction", true);
+		if (info.getFeltTrustImmediately() != null)
+			json.writeNumberField("feltTrustImmediately", info.getFeltTrustImmediately());
+		if (info.getFeltTrustAfterwards() != null)
+			json.writeNumberField("feltTrustAfterwards", info.getFeltTrustAfterwards());
+		if (!info.getCauses().isEmpty()) {
+			json.writeArrayFieldStart("causes");
+			for (InformationLink link : info.getCauses()) {
+				json.writeStartObject();
+				json.writeStringField("type", link.getType().toString());
+				json.writeFieldName("target");
+				writeRef(json, refs.get(link.getTarget()));
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+		}
+		json.writeEndObject();
+	}
+
+	static void writeRef(JsonGenerator json, String ref) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("$ref", ref);
+		json.writeEndObject();
+	}
+
+}
@@ -0,0 +1,69 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+import keml.Conversation;
+
+class TrustCurveTest {
+
+	// the float evaluation of the graph rounds in every step, the curves are exact polynomials
+	static final double TOLERANCE = 1e-3;
+
+	@Test
+	void curvesMatchTheEvaluationAtEveryIntegerWeight() {
+		for (int seed = 0; seed < 6; seed++) {
+			Conversation conv = new ConversationGenerator(seed).partners(3).messages(40).newInformation(400)
+					.preKnowledge(10).repetitions(30).links(900).shape(ConversationGenerator.Shape.values()[seed % 3])
+					.depth(5 + seed * 3).generate();
+			ArgumentationGraph graph = ArgumentationGraph.compile(conv);
+			double from = seed % 2 == 0 ? 1 : 2;
+			for (Pair<String, Map<String, Float>> configuration : TrustEvaluator
+					.standardTrustConfigurations(graph.getPartnerNames())) {
+				float[] initialTrust = graph.initialTrust(configuration.getValue1(), 1f);
+				TrustCurve[] curves = new ParametricTrustSolver(graph).solve(initialTrust, from, 10);
+				for (int w = (int) from; w <= 10; w++) {
+					float[] trust = graph.evaluate(initialTrust, w);
+					for (int node = 0; node < trust.length; node++) {
+						assertEquals(trust[node], curves[node].evaluate(w), TOLERANCE,
+								"seed " + seed + ", weight " + w + ", node " + node + ": " + curves[node]);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void curvesStayWithinTheTrustRange() {
+		Conversation conv = new ConversationGenerator(7).partners(2).messages(30).newInformation(300).links(800)
+				.generate();
+		ArgumentationGraph graph = ArgumentationGraph.compile(conv);
+		float[] initialTrust = graph.initialTrust(
+				TrustEvaluator.standardTrustConfigurations(graph.getPartnerNames()).get(0).getValue1(), 1f);
+		for (TrustCurve curve : new ParametricTrustSolver(graph).solve(initialTrust, 2, 10)) {
+			for (double w = 2; w <= 10; w += 0.125) {
+				double trust = curve.evaluate(w);
+				assertTrue(trust >= -1 - TOLERANCE && trust <= 1 + TOLERANCE, curve + " at " + w);
+			}
+		}
+	}
+
+	@Test
+	void piecesAreFoundByWeight() {
+		TrustCurve curve = new TrustCurve(new double[] { 2, 4, 10 }, new double[][] { { 0, 0.5 }, { 1 } });
+		assertEquals(0.0, curve.evaluate(2));
+		assertEquals(0.5, curve.evaluate(3));
+		assertEquals(1.0, curve.evaluate(4));
+		assertEquals(1.0, curve.evaluate(10));
+		assertEquals(0, curve.piece(4));
+		assertEquals(1, curve.piece(4.5));
+		assertThrows(IllegalArgumentException.class, () -> curve.evaluate(1.5));
+	}
+
+}
@@ -0,0 +1,62 @@
+package keml.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+import keml.Conversation;
+import keml.Information;
+import keml.InformationLinkType;
+
+class TrustEvaluatorTest {
+
+	// links added through a session change the model, a later evaluation must follow them like a fresh evaluator
+	@Test
+	void evaluationFollowsLinksAddedAfterTheFirstRun() {
+		for (int seed = 0; seed < 4; seed++) {
+			Conversation conv = new ConversationGenerator(seed).partners(2).messages(40).newInformation(300)
+					.preKnowledge(10).links(600).shape(ConversationGenerator.Shape.RANDOM_DAG).generate();
+			Map<String, Float> trust = TrustEvaluator
+					.standardTrustConfigurations(ConversationAnalyser.getPartnerNames(conv)).get(1).getValue1();
+			TrustEvaluator evaluator = new TrustEvaluator(conv, 3);
+			evaluator.analyse(trust, 1.0f);
+
+			List<Information> infos = new ArrayList<>(
+					ConversationAnalyser.getNewInfos(ConversationAnalyser.getReceives(conv)));
+			infos.addAll(conv.getAuthor().getPreknowledge());
+			TrustSession session = evaluator.session(trust, 1.0f);
+			Random random = new Random(seed);
+			int added = 0;
+			while (added < 30) {
+				Information source = infos.get(random.nextInt(infos.size()));
+				Information target = infos.get(random.nextInt(infos.size()));
+				if (source == target)
+					continue;
+				try {
+					session.addLink(source, target,
+							random.nextBoolean() ? InformationLinkType.SUPPORT : InformationLinkType.ATTACK);
+					added++;
+				} catch (CyclicArgumentationException e) {
+					// not added
+				}
+			}
+
+			HashMap<Information, Pair<Float, Float>> again = evaluator.analyse(trust, 1.0f);
+			HashMap<Information, Pair<Float, Float>> fresh = new TrustEvaluator(conv, 3).analyse(trust, 1.0f);
+			assertTrue(fresh.size() > 0);
+			for (Information info : infos) {
+				assertEquals(fresh.get(info).getValue1(), again.get(info).getValue1(), "seed " + seed);
+				assertEquals(session.getTrust(info), again.get(info).getValue1(), 1e-5, "seed " + seed);
+			}
+		}
+	}
+
+}